@@ -1,21 +1,59 @@
 package uk.ac.ed.inf;
 
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 /**
  * Instantiates a context with the provided arguments.
- * Argument can be either [-date, -url], or [-url]
+ * Argument can be either [-date, -url], [-url], or [-startDate, -endDate, -url] to process a range of dates in parallel.
+ * With [serve, -url] or [serve, -url, -port] it instead keeps running as a {@link RoutingService}.
+ * With [feed, -url, -path] it instead keeps processing the orders appended to a file or dropped in a directory, see
+ * {@link OrderFeed}.
+ * With [dispatch, -date, -url, -drones] it instead plans the date's deliveries for a fleet, see {@link FleetDispatcher}.
  * */
 public class App
 {
     public static void main( String[] args )
     {
+        // Case where the routing service is started, it runs until the process is stopped
+        if (args.length >= 2 && args.length <= 3 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        // Case where orders are read from a file or directory as they arrive, until the process is stopped
+        if (args.length == 3 && args[0].equals("feed")) {
+            feed(args[1], args[2]);
+            return;
+        }
+        // Case where the orders of a date are planned for a fleet of drones
+        if (args.length == 4 && args[0].equals("dispatch")) {
+            dispatch(args[1], args[2], args[3]);
+            return;
+        }
         // Reject if too many arguments passed in
-        if (args.length > 2) {
-            System.err.println("Error: invalid number of arguments provided. Please try again with the format [-date -url] or  [-url].");
+        if (args.length > 3 || args.length == 0) {
+            System.err.println("Error: invalid number of arguments provided. Please try again with the format [-date -url], [-url] or [-startDate -endDate -url].");
+            return;
         }
         // Case where only url is provided
         if (args.length == 1) {
             new Context(args[0], "");
         }
+        // Case where a date range and url are provided
+        else if (args.length == 3) {
+            try {
+                LocalDate startDate = LocalDate.parse(args[0]);
+                LocalDate endDate = LocalDate.parse(args[1]);
+                new BatchRunner(args[2], startDate, endDate, Runtime.getRuntime().availableProcessors()).run();
+                System.out.println("Program terminated successfully. Exiting...");
+            }
+            catch (DateTimeParseException | IllegalArgumentException e) {
+                System.err.println("Error: invalid date range provided. " + e.getMessage());
+            }
+        }
         // Case where date and url are provided
         else {
             String date = args[0];
@@ -24,4 +62,55 @@ public class App
             System.out.println("Program terminated successfully. Exiting...");
         }
     }
-}
\ No newline at end of file
+
+    private static void serve(String[] args) {
+        int port = RoutingService.DEFAULT_PORT;
+        if (args.length == 3) {
+            try {
+                port = Integer.parseInt(args[2]);
+            }
+            catch (NumberFormatException e) {
+                System.err.println("Error: invalid port provided: " + args[2]);
+                return;
+            }
+        }
+        try {
+            RoutingService routingService = new RoutingService(ReferenceData.fetch(args[1]), port);
+            Runtime.getRuntime().addShutdownHook(new Thread(routingService::stop));
+            routingService.start();
+        }
+        catch (IOException e) {
+            System.err.println("Error: could not start the routing service on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    private static void feed(String url, String path) {
+        try {
+            OrderFeed orderFeed = new OrderFeed(ReferenceData.fetch(url), Paths.get(path), Paths.get(""));
+            Runtime.getRuntime().addShutdownHook(new Thread(orderFeed::stop));
+            orderFeed.run();
+        }
+        catch (IOException | InvalidPathException e) {
+            System.err.println("Error: could not read orders from " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void dispatch(String date, String url, String drones) {
+        int fleetSize;
+        try {
+            fleetSize = Integer.parseInt(drones);
+        }
+        catch (NumberFormatException e) {
+            System.err.println("Error: invalid number of drones provided: " + drones);
+            return;
+        }
+        try {
+            LocalDate.parse(date);
+            FleetDispatcher.run(url, date, fleetSize);
+            System.out.println("Program terminated successfully. Exiting...");
+        }
+        catch (DateTimeParseException | IllegalArgumentException e) {
+            System.err.println("Error: invalid dispatch arguments provided. " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.ed.inf;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes every date in an inclusive date range. The {@link ReferenceData} (restaurants, zones, visibility graph
+ * and route cache) is fetched once and shared, and each date runs as its own {@link Context} on a worker pool,
+ * writing its own flightpath-, deliveries- and drone- files.
+ * */
+public class BatchRunner {
+    private final String url;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final int threads;
+
+    /**
+     * @param url Valid url to the homepage of a REST server.
+     * @param startDate First date to process.
+     * @param endDate Last date to process, inclusive.
+     * @param threads Number of dates processed at the same time.
+     * */
+    public BatchRunner(String url, LocalDate startDate, LocalDate endDate, int threads) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date " + endDate + " is before start date " + startDate);
+        }
+        this.url = url;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs every date and waits until all of them are done. A date that fails is reported with {@link System#err}
+     * and does not stop the other dates.
+     * @return The number of dates that completed without an exception.
+     * */
+    public int run() {
+        long start_time = System.nanoTime();
+        ReferenceData referenceData = ReferenceData.fetch(this.url);
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        ArrayList<LocalDate> dates = new ArrayList<>();
+        ArrayList<Future<?>> results = new ArrayList<>();
+        for (LocalDate date = this.startDate; !date.isAfter(this.endDate); date = date.plusDays(1)) {
+            String day = date.toString();
+            dates.add(date);
+            results.add(executor.submit(() -> new Context(this.url, day, referenceData)));
+        }
+        executor.shutdown();
+
+        int completed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+                completed += 1;
+            }
+            catch (ExecutionException e) {
+                System.err.println("Error: processing " + dates.get(i) + " failed: " + e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                break;
+            }
+        }
+        referenceData.saveRoutes();
+        long end_time = System.nanoTime();
+        System.out.println("Batch of " + dates.size() + " dates on " + this.threads + " threads took: "
+                + ((end_time - start_time) / 1_000_000_000.0) + "s");
+        return completed;
+    }
+}
@@ -2,50 +2,52 @@ package uk.ac.ed.inf;
 
 import uk.ac.ed.inf.ilp.data.*;
 
-import java.io.File;
 import java.time.DayOfWeek;
 import java.util.ArrayList;
+import java.util.List;
 
 // JSON Deserializing
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
 import uk.ac.ed.inf.serializers.Serializer;
 import uk.ac.ed.inf.serializers.LocalDateDeserialize;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 // Order Validation
 import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.validator.MenuIndex;
 import uk.ac.ed.inf.validator.OrderValidator;
 
 // Connection Handling
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Holds all the orders that need to be processed, as well as the information required to process that order.
+ * Processes all the orders of a date, and holds the information required to process them.
  * */
 public class Context {
+    // orders are validated and routed in chunks of this size as they are read, so memory does not grow with the
+    // number of orders
+    static final int CHUNK_SIZE = 1024;
+    // Appleton Towers, where the drone starts unless told otherwise
+    public static final LngLat DEPOT = new LngLat(-3.186874, 55.944494);
+
     // date refers to command line arguments, not order dates
     private final String date;
     private final String url;
-    // values are retrieved with get()
-    private Restaurant[] restaurants;
-    private NamedRegion centralArea;
-    private NamedRegion[] noFlyZones;
-    private ArrayList<Order> orders;
-    // defaults to Appleton Towers
-    private LngLat src = new LngLat(-3.186874, 55.944494);
-    // refers to restaurant location (represents the drone's destination)
-    private LngLat dest;
+    // restaurants, zones and routing state, possibly shared with other contexts
+    private final ReferenceData referenceData;
+    // defaults to the depot
+    private LngLat src = DEPOT;
 
 
     /** Context class represents all the data collected from a REST Server given a specific day.
-     *  Upon construction, Context attempts to load all the order data from the REST Server.
+     *  Upon construction, Context streams the order data from the REST Server, processing orders as they arrive.
      *  For each order, context uses {@link OrderValidator} to handle order validation.
      *  If the order is valid, Context uses {@link DronePathFinder} to handle flight path computation.
      *  If the Context was provided with no date and just a URL, then it will get all orders on the server.
@@ -53,50 +55,36 @@ public class Context {
      * @param date Valid date.
      */
     public Context(String url, String date) {
+        this(url, date, null);
+    }
+
+    /** Same as {@link #Context(String, String)}, but reuses reference data that was already fetched, so that only the
+     *  orders of this date are retrieved. This is how {@link BatchRunner} runs many dates against one shared
+     *  {@link ReferenceData}.
+     * @param url Valid url to the homepage of a REST server, where JSON endpoints are accessible by appending a '/endpoint'.
+     * @param date Valid date.
+     * @param referenceData Shared reference data, or null to fetch it from the url and save routes when done.
+     */
+    public Context(String url, String date, ReferenceData referenceData) {
         this.url = url;
         this.date = date;
-        Serializer serializer = new Serializer();
-        // load data
+        // results are written out as the orders are processed
+        Serializer serializer = Serializer.streaming(date);
+        // load data, the orders are requested alongside the reference data and read once it is there
         long get_start_time = System.nanoTime();
-        get();
+        CompletableFuture<InputStream> ordersResponse = RestClient.shared().openAsync(url, getOrdersEndpoint());
+        this.referenceData = (referenceData == null) ? ReferenceData.fetch(url) : referenceData;
         long get_end_time = System.nanoTime();
         System.out.println("Retrieving from url took: " + ((get_end_time - get_start_time) / 1_000_000_000.0) + "s");
 
         long start_time = System.nanoTime();
-        // initialise orderValidator
-        OrderValidator orderValidator = new OrderValidator();
-        // initialise path caching
-        HashMap<LngLat, ArrayList<LngLat>> pathCache = new HashMap<>();
-        int pathfinder_called = 0;
-        // order processing done here
-        for (Order order: this.orders) {
-            // pass order to order validator
-            Order processedOrder = orderValidator.validateOrder(order, this.restaurants);
-            // if order is invalid then add to the delivery serializer and then skip
-            if (!processedOrder.getOrderValidationCode().equals(OrderValidationCode.NO_ERROR)) {
-                serializer.addToDeliverySerializer(processedOrder, new LngLat(0.0, 0.0), new LngLat(0.0, 0.0));
-                continue;
-            }
-            // if order is valid then get restaurant
-            Restaurant restaurant = getRestaurantFromOrder(processedOrder, restaurants);
-            // set destination to restaurant location
-            this.dest = restaurant.location();
-
-            if (!pathCache.containsKey(dest)) {
-                // find the drone path with the current context
-                System.out.println(restaurant.name());
-                pathCache.put(dest, new DronePathFinder(this).getRoute());
-            }
-
-            pathCache.put(dest, new DronePathFinder(this).getRoute());
-            pathfinder_called += 1;
-            LngLat[] dronePath = pathCache.get(dest).toArray(new LngLat[0]);
-            // add information to serializer
-            serializer.addToFlightPathSerializer(processedOrder, dronePath);
-            serializer.addToDeliverySerializer(processedOrder, this.getSrc(), this.getDest());
-            serializer.addToFeatureCollection(dronePath);
+        // order processing done here, while the orders are being read
+        get(serializer, ordersResponse);
+        System.out.println("Route cache: " + this.referenceData.getRouteCache());
+        // a shared store is saved by its owner once every context is done
+        if (referenceData == null) {
+            this.referenceData.saveRoutes();
         }
-        System.out.println(pathfinder_called);
         long end_time = System.nanoTime();
         System.out.println("Routing took: " + ((end_time - start_time) / 1_000_000_000.0) + "s");
         long start_time_serializing = System.nanoTime();
@@ -109,95 +97,139 @@ public class Context {
     }
 
     /**
-     * This function is analogous to HTTP's GET. Retrieves information from the necessary endpoints and stores it in the
-     * caller's fields. If the endpoint is empty then notify the user with {@link System#err}. If the URL is invalid
-     * notify the user.
+     * This function is analogous to HTTP's GET. Streams the orders of {@link #date} from the server, and hands them
+     * to {@link #process(List, Serializer)} in chunks of {@link #CHUNK_SIZE} as they are parsed, so the response is
+     * never held in memory as a whole. If the endpoint is empty then notify the user with {@link System#err}. If the
+     * URL is invalid notify the user.
+     * @param serializer Collects the processed orders.
+     * @param ordersResponse The pending response of {@link #getOrdersEndpoint()}.
      */
-    private void get() {
-
-        // initialise values
-        this.orders = new ArrayList<>();
-        this.restaurants = new Restaurant[]{};
-        this.noFlyZones = new NamedRegion[]{};
-        this.centralArea = new NamedRegion("", new LngLat[0]);
-
-        // set up custom local date deserializing
-        ObjectMapper objectMapper = new ObjectMapper();
-        SimpleModule module = new SimpleModule();
-        module.addDeserializer(LocalDate.class, new LocalDateDeserialize());
-        objectMapper.registerModule(module);
-
-        try {
-            // check if user wants all orders or orders filtered by a date passed in as an argument from the terminal
-            String order_string = "orders";
-            if (!this.date.isBlank()) {
-                order_string += ('/' + this.date);
+    private void get(Serializer serializer, CompletableFuture<InputStream> ordersResponse) {
+        ArrayList<Order> chunk = new ArrayList<>(CHUNK_SIZE);
+        int count = 0;
+        try (InputStream input = openService(this.url, getOrdersEndpoint(), ordersResponse);
+             MappingIterator<Order> orders = getObjectMapper().readerFor(Order.class).readValues(input)) {
+            // read values, the iterator steps into the top level array one order at a time
+            while (orders.hasNextValue()) {
+                chunk.add(orders.nextValue());
+                count++;
+                if (chunk.size() == CHUNK_SIZE) {
+                    process(chunk, serializer);
+                    chunk.clear();
+                }
             }
-            // read values
-            this.orders = objectMapper.readValue(fetchDataFromService(order_string), new TypeReference<ArrayList<Order>>() {});
-            this.restaurants = objectMapper.readValue(fetchDataFromService("restaurants"), Restaurant[].class);
-            this.noFlyZones = objectMapper.readValue(fetchDataFromService("noFlyZones"), NamedRegion[].class);
-            // this.nolyZones = objectMapper.readValue(new File("namedregions.json"), NamedRegion[].class);
-            this.centralArea = objectMapper.readValue(fetchDataFromService("centralArea"), NamedRegion.class);
-
             // notify if values are empty
-            if (this.orders.isEmpty()) {
+            if (count == 0) {
                 System.err.println("Warning: /orders/" + date + " is empty");
             }
-            if (this.restaurants.length == 0) {
-                System.err.println("Warning: /restaurants is empty");
-            }
-            if (this.noFlyZones.length == 0) {
-                System.err.println("Warning: /noFlyZones is empty");
-            }
-            if (centralArea.vertices().length == 0) {
-                System.err.println("Warning: /centralArea is empty");
-            }
         }
         catch (Exception e) {
             System.err.println("Error: invalid url/endpoint provided. Please try different arguments");
         }
+        // orders read before an error are still processed
+        process(chunk, serializer);
+    }
+
+    // check if user wants all orders or orders filtered by a date passed in as an argument from the terminal
+    private String getOrdersEndpoint() {
+        String order_string = "orders";
+        if (!this.date.isBlank()) {
+            order_string += ('/' + this.date);
+        }
+        return order_string;
+    }
+
+    /**
+     * Validates a chunk of orders in parallel and finds the drone path of every valid one.
+     * @param orders Orders in the order they were read, which is the order they are serialized in.
+     * @param serializer Collects the processed orders.
+     */
+    private void process(List<Order> orders, Serializer serializer) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        OrderValidator orderValidator = new OrderValidator();
+        MenuIndex menuIndex = this.referenceData.getMenuIndex();
+        // pass the chunk to the order validator, which validates it in parallel
+        List<Order> processedOrders = orderValidator.validateAll(orders, menuIndex);
+        for (Order processedOrder: processedOrders) {
+            // if order is invalid then add to the delivery serializer and then skip
+            if (!processedOrder.getOrderValidationCode().equals(OrderValidationCode.NO_ERROR)) {
+                serializer.addToDeliverySerializer(processedOrder, new LngLat(0.0, 0.0), new LngLat(0.0, 0.0));
+                continue;
+            }
+            // if order is valid then get restaurant, its location is the drone's destination
+            LngLat dest = getRestaurantFromOrder(processedOrder, menuIndex).location();
+
+            // find the drone path, unless it has been found before
+            LngLat[] dronePath = this.referenceData.getRoute(this.src, dest).toArray(new LngLat[0]);
+            // add information to serializer
+            serializer.addToFlightPathSerializer(processedOrder, dronePath);
+            serializer.addToDeliverySerializer(processedOrder, this.src, dest);
+            serializer.addToFeatureCollection(dronePath);
+        }
+    }
+
+    /**
+     * @return An {@link ObjectMapper} set up with custom local date deserializing.
+     */
+    static ObjectMapper getObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(LocalDate.class, new LocalDateDeserialize());
+        objectMapper.registerModule(module);
+        return objectMapper;
     }
 
 
     /**
-     * This function appends an {@param endpoint} on {@link #url} and then attempts to retrieve the JSON string,
+     * This function appends an {@param endpoint} on {@param url} and then attempts to retrieve the JSON string,
+     * @param url The homepage of the REST server
      * @param endpoint The specified endpoint
      * @return The JSON string at the endpoint, ready to be deserialized.
      */
-    private String fetchDataFromService(String endpoint) {
-        try {
-            URL u = new URL(this.url + "/" + endpoint);
-            InputStream input = u.openStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-            StringBuilder json = new StringBuilder();
-            int c;
-            while ((c = reader.read()) != -1) {
-                json.append((char) c);
-            }
-            return json.toString();
+    static String fetchDataFromService(String url, String endpoint) {
+        try (InputStream input = openService(url, endpoint)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
         }
         catch (Exception e) {
-            System.err.println("Error: /" + endpoint + "/ is not a valid endpoint on: " + this.url);
             return "";
         }
     }
 
+    /**
+     * Opens a connection to {@param endpoint} on {@param url}, for the caller to read as it likes and close.
+     * If the endpoint cannot be opened then notify the user with {@link System#err}.
+     * @param url The homepage of the REST server
+     * @param endpoint The specified endpoint
+     * @return The response body at the endpoint.
+     */
+    static InputStream openService(String url, String endpoint) throws IOException {
+        return openService(url, endpoint, RestClient.shared().openAsync(url, endpoint));
+    }
+
+    private static InputStream openService(String url, String endpoint, CompletableFuture<InputStream> response)
+            throws IOException {
+        try {
+            return RestClient.await(response);
+        }
+        catch (IOException e) {
+            System.err.println("Error: /" + endpoint + "/ is not a valid endpoint on: " + url);
+            throw e;
+        }
+    }
+
     /**
      * This function finds the restaurant corresponding to the order and returns it.
      * @param order An {@link Order}.
-     * @param restaurants A list of {@link Restaurant}.
+     * @param menuIndex A {@link MenuIndex} of the defined restaurants.
      * @return The {@link Restaurant} corresponding to that {@link Order}.
      */
-    private static Restaurant getRestaurantFromOrder(Order order, Restaurant[] restaurants) {
-        // get name of first pizza from order
-        for (Restaurant restaurant: restaurants) {
-            for (Pizza pizza: restaurant.menu()) {
-                // return restaurant once match is found
-                if (pizza.name().equals(order.getPizzasInOrder()[0].name())) {
-                    return restaurant;
-                }
-            }
+    static Restaurant getRestaurantFromOrder(Order order, MenuIndex menuIndex) {
+        // look up the restaurant selling the first pizza of the order
+        Restaurant restaurant = menuIndex.getRestaurant(order.getPizzasInOrder()[0].name());
+        if (restaurant != null) {
+            return restaurant;
         }
         // return a blank restaurant to avoid unexpected behaviours introduced by dangling null pointers.
         return new Restaurant("", new LngLat(0.0, 0.0), new DayOfWeek[]{}, new Pizza[]{});
@@ -208,21 +240,20 @@ public class Context {
     public LngLat getSrc() {
         return this.src;
     }
-    public LngLat getDest() {
-        return this.dest;
-    }
     public NamedRegion[] getNoFlyZones() {
-        return this.noFlyZones;
+        return this.referenceData.getNoFlyZones();
+    }
+    public NamedRegion getCentralArea() { return this.referenceData.getCentralArea(); }
+    public VisibilityGraph getVisibilityGraph() {
+        return this.referenceData.getVisibilityGraph();
+    }
+    public ReferenceData getReferenceData() {
+        return this.referenceData;
     }
-    public NamedRegion getCentralArea() { return this.centralArea; }
 
     //------------------------------------------------------------------
     // Setters
     public void setSrc(LngLat src) {
         this.src = src;
     }
-
-    public void setDest(LngLat dest) {
-        this.dest = dest;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,658 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.pathfinder.LatticePlanner;
+import uk.ac.ed.inf.pathfinder.RouteTable;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+import uk.ac.ed.inf.validator.MenuIndex;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Plans a day of deliveries for a fleet of drones, instead of one flight per order. Every drone has a move budget, its
+ * battery for the day ({@link SystemConstants#DRONE_MAX_MOVES} by default), and carries up to a number of orders per
+ * trip. A trip leaves {@link Context#DEPOT}, picks up at one or more restaurants and flies back. It costs the moves of
+ * its legs and a hover at every stop. The legs from and to the depot are those of
+ * {@link ReferenceData#getRoute(LngLat, LngLat)}, so a trip to one restaurant costs exactly as many moves as the flight
+ * a {@link Context} writes for it. The legs between restaurants are planned by the {@link LatticePlanner}, and follow
+ * the rule that a drone carrying orders may enter the central area but not leave it.
+ * <p>
+ * Orders of the same restaurant are grouped into full trips first. The rest are merged into multi-stop trips by
+ * savings (Clarke-Wright), then improved by moving and swapping orders between trips. The trips are packed into the
+ * drones' budgets, fewest moves per delivery first, and orders that do not fit are undelivered. Several randomized
+ * starts are solved in parallel on the common {@link ForkJoinPool}, and the plan delivering the most orders in the
+ * fewest moves is kept.
+ * </p>
+ * */
+public class FleetDispatcher {
+    public static final String MOVE_BUDGET_PROPERTY = "pizzadronz.fleet.moveBudget";
+    public static final String CAPACITY_PROPERTY = "pizzadronz.fleet.capacity";
+    public static final int DEFAULT_CAPACITY = 3;
+    // starts solved in parallel, start 0 is the heuristic without randomness
+    static final int STARTS = 16;
+    // how much the randomized starts perturb savings and packing order
+    private static final double NOISE = 0.3;
+    // trips over more distinct restaurants than this are ordered nearest first instead of exactly
+    private static final int EXACT_TOUR_STOPS = 12;
+    // a leg between restaurants that the lattice planner cannot find within this many expansions cannot be flown
+    static final int LEG_MAX_EXPANSIONS = 50_000;
+    // the moves of a leg that cannot be flown, more than any budget but small enough to add up without overflowing
+    private static final int UNFLYABLE = 10_000_000;
+
+    private final ReferenceData referenceData;
+    private final RouteTable routeTable;
+    private final int drones;
+    private final int moveBudget;
+    private final int capacity;
+    // legs[from][to]: moves from one terminal to another, filled in for the terminals of the orders dispatched
+    private final int[][] legs;
+    // the best tour over every set of stops planned so far, by its sorted stops
+    private final ConcurrentHashMap<List<Integer>, Tour> tours = new ConcurrentHashMap<>();
+
+    /**
+     * @param referenceData The restaurants and the routing state, its {@link RouteTable} has the terminals.
+     * @param drones The number of drones.
+     * @param moveBudget The moves every drone can fly in a day.
+     * @param capacity The number of orders a drone can carry on one trip.
+     * */
+    public FleetDispatcher(ReferenceData referenceData, int drones, int moveBudget, int capacity) {
+        if (drones < 1 || moveBudget < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Drones, move budget and capacity must be positive, got: " + drones
+                    + ", " + moveBudget + ", " + capacity);
+        }
+        this.referenceData = referenceData;
+        this.routeTable = referenceData.getRouteTable();
+        this.drones = drones;
+        this.moveBudget = moveBudget;
+        this.capacity = capacity;
+        this.legs = new int[this.routeTable.size()][this.routeTable.size()];
+    }
+
+    /**
+     * A trip of one drone.
+     * @param orders The orders carried.
+     * @param stops The restaurants in the order they are visited.
+     * @param moves The moves flown, from take off at the depot to landing there.
+     * */
+    public record Trip(List<Order> orders, List<LngLat> stops, int moves) {}
+
+    /**
+     * The trips of one drone, in the order they are flown.
+     * @param drone Numbered from 1.
+     * */
+    public record DroneSchedule(int drone, List<Trip> trips, int moves, int deliveries) {}
+
+    /**
+     * The plan of the whole fleet.
+     * @param drones Every drone, including those without trips.
+     * @param undelivered The orders no drone has the moves for.
+     * */
+    public record Dispatch(List<DroneSchedule> drones, List<Order> undelivered, int moves, int deliveries) {}
+
+    // an order, and the terminal of its restaurant
+    private record Job(Order order, int terminal) {}
+
+    // the stops of a trip in flight order, terminal ids
+    private record Tour(int[] stops, int moves) {}
+
+    // the result of one start, drones[d] are the trips of drone d
+    private record Plan(List<List<List<Job>>> drones, List<Job> undelivered, int moves, int deliveries,
+                        int busiest, int start) {}
+
+    // most deliveries, then fewest moves, then the busiest drone least busy, then the lowest start
+    private static final Comparator<Plan> BEST = Comparator.comparingInt((Plan plan) -> -plan.deliveries())
+            .thenComparingInt(Plan::moves)
+            .thenComparingInt(Plan::busiest)
+            .thenComparingInt(Plan::start);
+
+    /**
+     * Plans the deliveries of a day.
+     * @param orders Valid orders, as validated by the {@link OrderValidator}.
+     * */
+    public Dispatch dispatch(List<Order> orders) {
+        MenuIndex menuIndex = this.referenceData.getMenuIndex();
+        List<Job> jobs = new ArrayList<>();
+        List<Order> undelivered = new ArrayList<>();
+        for (Order order: orders) {
+            int terminal = this.routeTable.indexOf(Context.getRestaurantFromOrder(order, menuIndex).location());
+            if (terminal < 0) {
+                undelivered.add(order);
+            }
+            else {
+                jobs.add(new Job(order, terminal));
+            }
+        }
+        planLegs(jobs);
+
+        Plan best = IntStream.range(0, STARTS).parallel()
+                .mapToObj(start -> solve(jobs, start))
+                .min(BEST)
+                .orElseThrow();
+
+        List<DroneSchedule> schedules = new ArrayList<>();
+        for (int drone = 0; drone < this.drones; drone++) {
+            List<Trip> trips = new ArrayList<>();
+            int moves = 0;
+            int deliveries = 0;
+            for (List<Job> trip: best.drones().get(drone)) {
+                Tour tour = tourOf(trip);
+                List<LngLat> stops = new ArrayList<>();
+                for (int stop: tour.stops()) {
+                    stops.add(this.routeTable.getTerminal(stop));
+                }
+                trips.add(new Trip(trip.stream().map(Job::order).toList(), stops, tour.moves()));
+                moves += tour.moves();
+                deliveries += trip.size();
+            }
+            schedules.add(new DroneSchedule(drone + 1, trips, moves, deliveries));
+        }
+        best.undelivered().forEach(job -> undelivered.add(job.order()));
+        return new Dispatch(schedules, undelivered, best.moves(), best.deliveries());
+    }
+
+    // plans every leg between the terminals the orders need, in parallel
+    private void planLegs(List<Job> jobs) {
+        int depot = this.routeTable.indexOf(Context.DEPOT);
+        TreeSet<Integer> terminals = new TreeSet<>();
+        terminals.add(depot);
+        jobs.forEach(job -> terminals.add(job.terminal()));
+        Integer[] used = terminals.toArray(new Integer[0]);
+        IntStream.range(0, used.length * used.length).parallel().forEach(pair -> {
+            int from = used[pair / used.length];
+            int to = used[pair % used.length];
+            if (from == to) {
+                return;
+            }
+            if (from == depot || to == depot) {
+                // either half of the depot's route, which flies out, hovers, flies back and hovers, see
+                // DronePathFinder.getRoute()
+                int restaurant = (from == depot) ? to : from;
+                List<LngLat> route = this.referenceData.getRoute(Context.DEPOT, this.routeTable.getTerminal(restaurant));
+                this.legs[from][to] = (route.size() - 2) / 2;
+            }
+            else if (this.capacity > 1) {
+                // a drone carrying one order at a time never flies between restaurants
+                this.legs[from][to] = planLeg(this.routeTable.getTerminal(from), this.routeTable.getTerminal(to));
+            }
+        });
+    }
+
+    // the moves from one restaurant to the next with orders on board, or UNFLYABLE
+    private int planLeg(LngLat from, LngLat to) {
+        VisibilityGraph visibilityGraph = this.referenceData.getVisibilityGraph();
+        ZoneSet zoneSet = visibilityGraph.getZoneSet();
+        boolean fromInside = zoneSet.isInCentralArea(from);
+        boolean toInside = zoneSet.isInCentralArea(to);
+        if (fromInside && !toInside) {
+            return UNFLYABLE;
+        }
+        // planned flights may leave the central area but never enter it, so a leg into it is planned the other way
+        // round and flown in reverse
+        LngLat[] flight = toInside ? LatticePlanner.plan(visibilityGraph, to, from, LEG_MAX_EXPANSIONS)
+                : LatticePlanner.plan(visibilityGraph, from, to, LEG_MAX_EXPANSIONS);
+        return (flight == null) ? UNFLYABLE : flight.length - 1;
+    }
+
+    // whether a trip of so many moves can be flown on one charge
+    private boolean isFlyable(int moves) {
+        return moves < UNFLYABLE && moves <= this.moveBudget;
+    }
+
+    private Plan solve(List<Job> jobs, int start) {
+        Random random = new Random(start);
+        return pack(formTrips(jobs, random, start), random, start);
+    }
+
+    //------------------------------------------------------------------
+    // Trips
+
+    private List<List<Job>> formTrips(List<Job> jobs, Random random, int start) {
+        // by restaurant, in terminal order so that every start sees the same jobs in the same order
+        TreeMap<Integer, List<Job>> byStop = new TreeMap<>();
+        for (Job job: jobs) {
+            byStop.computeIfAbsent(job.terminal(), stop -> new ArrayList<>()).add(job);
+        }
+        List<List<Job>> full = new ArrayList<>();
+        List<List<Job>> partial = new ArrayList<>();
+        for (List<Job> same: byStop.values()) {
+            for (int i = 0; i < same.size(); i += this.capacity) {
+                List<Job> trip = new ArrayList<>(same.subList(i, Math.min(i + this.capacity, same.size())));
+                (trip.size() == this.capacity ? full : partial).add(trip);
+            }
+        }
+        merge(partial, random, start);
+        improve(partial);
+        full.addAll(partial);
+        return full;
+    }
+
+    // Clarke-Wright: merges the pair of trips that saves the most moves until no merge saves any
+    private void merge(List<List<Job>> trips, Random random, int start) {
+        while (true) {
+            double bestSaving = 0.0;
+            int bestA = -1;
+            int bestB = -1;
+            for (int a = 0; a < trips.size(); a++) {
+                for (int b = a + 1; b < trips.size(); b++) {
+                    if (trips.get(a).size() + trips.get(b).size() > this.capacity) {
+                        continue;
+                    }
+                    int merged = movesOf(union(trips.get(a), trips.get(b)));
+                    int saving = movesOf(trips.get(a)) + movesOf(trips.get(b)) - merged;
+                    if (saving <= 0 || !isFlyable(merged)) {
+                        continue;
+                    }
+                    double noisy = (start == 0) ? saving : saving * (1.0 + NOISE * random.nextDouble());
+                    if (noisy > bestSaving) {
+                        bestSaving = noisy;
+                        bestA = a;
+                        bestB = b;
+                    }
+                }
+            }
+            if (bestA < 0) {
+                return;
+            }
+            trips.set(bestA, union(trips.get(bestA), trips.get(bestB)));
+            trips.remove(bestB);
+        }
+    }
+
+    // moves one order to another trip, or swaps two orders of different trips, while that saves moves
+    private void improve(List<List<Job>> trips) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < trips.size() && !improved; a++) {
+                for (int b = 0; b < trips.size() && !improved; b++) {
+                    if (a != b) {
+                        improved = relocate(trips.get(a), trips.get(b)) || (a < b && swap(trips.get(a), trips.get(b)));
+                    }
+                }
+            }
+            trips.removeIf(List::isEmpty);
+        }
+    }
+
+    private boolean relocate(List<Job> from, List<Job> to) {
+        if (to.size() >= this.capacity) {
+            return false;
+        }
+        int before = movesOf(from) + movesOf(to);
+        for (int i = 0; i < from.size(); i++) {
+            List<Job> newFrom = new ArrayList<>(from);
+            Job job = newFrom.remove(i);
+            List<Job> newTo = union(to, List.of(job));
+            int after = movesOf(newFrom) + movesOf(newTo);
+            if (after < before && isFlyable(movesOf(newTo))) {
+                from.remove(i);
+                to.add(job);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean swap(List<Job> a, List<Job> b) {
+        int before = movesOf(a) + movesOf(b);
+        for (int i = 0; i < a.size(); i++) {
+            for (int j = 0; j < b.size(); j++) {
+                if (a.get(i).terminal() == b.get(j).terminal()) {
+                    continue;
+                }
+                List<Job> newA = new ArrayList<>(a);
+                List<Job> newB = new ArrayList<>(b);
+                newA.set(i, b.get(j));
+                newB.set(j, a.get(i));
+                int movesA = movesOf(newA);
+                int movesB = movesOf(newB);
+                if (movesA + movesB < before && isFlyable(movesA) && isFlyable(movesB)) {
+                    Job job = a.get(i);
+                    a.set(i, b.get(j));
+                    b.set(j, job);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Job> union(List<Job> a, List<Job> b) {
+        List<Job> union = new ArrayList<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    //------------------------------------------------------------------
+    // Tours
+
+    private int movesOf(List<Job> trip) {
+        return trip.isEmpty() ? 0 : tourOf(trip).moves();
+    }
+
+    private Tour tourOf(List<Job> trip) {
+        TreeSet<Integer> stops = new TreeSet<>();
+        trip.forEach(job -> stops.add(job.terminal()));
+        return this.tours.computeIfAbsent(List.copyOf(stops), this::planTour);
+    }
+
+    // the order of visiting the stops with the fewest moves, exactly (Held-Karp) unless there are many stops
+    private Tour planTour(List<Integer> stops) {
+        int depot = this.routeTable.indexOf(Context.DEPOT);
+        int k = stops.size();
+        int[] order;
+        if (k > EXACT_TOUR_STOPS) {
+            order = nearestFirst(stops, depot);
+        }
+        else {
+            // cost[mask][last]: fewest moves from the depot through the stops in mask, ending at stop last
+            int[][] cost = new int[1 << k][k];
+            int[][] previous = new int[1 << k][k];
+            for (int[] row: cost) {
+                Arrays.fill(row, Integer.MAX_VALUE);
+            }
+            for (int last = 0; last < k; last++) {
+                cost[1 << last][last] = this.legs[depot][stops.get(last)];
+                previous[1 << last][last] = -1;
+            }
+            for (int mask = 1; mask < (1 << k); mask++) {
+                for (int last = 0; last < k; last++) {
+                    if (cost[mask][last] == Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    for (int next = 0; next < k; next++) {
+                        if ((mask & (1 << next)) != 0) {
+                            continue;
+                        }
+                        int moves = cost[mask][last] + this.legs[stops.get(last)][stops.get(next)];
+                        if (moves < cost[mask | (1 << next)][next]) {
+                            cost[mask | (1 << next)][next] = moves;
+                            previous[mask | (1 << next)][next] = last;
+                        }
+                    }
+                }
+            }
+            int all = (1 << k) - 1;
+            int best = 0;
+            for (int last = 1; last < k; last++) {
+                if (cost[all][last] + this.legs[stops.get(last)][depot] < cost[all][best] + this.legs[stops.get(best)][depot]) {
+                    best = last;
+                }
+            }
+            order = new int[k];
+            for (int i = k - 1, mask = all, last = best; i >= 0; i--) {
+                order[i] = stops.get(last);
+                int before = previous[mask][last];
+                mask &= ~(1 << last);
+                last = before;
+            }
+        }
+        int moves = this.legs[depot][order[0]] + this.legs[order[k - 1]][depot];
+        for (int i = 0; i < k - 1; i++) {
+            moves += this.legs[order[i]][order[i + 1]];
+        }
+        // a hover at every restaurant and on landing, but the last leg ends a move early, close to the depot
+        return new Tour(order, moves + k);
+    }
+
+    private int[] nearestFirst(List<Integer> stops, int depot) {
+        List<Integer> left = new ArrayList<>(stops);
+        int[] order = new int[stops.size()];
+        int at = depot;
+        for (int i = 0; i < order.length; i++) {
+            int from = at;
+            Integer next = Collections.min(left, Comparator.comparingInt(stop -> this.legs[from][stop]));
+            left.remove(next);
+            order[i] = next;
+            at = next;
+        }
+        return order;
+    }
+
+    //------------------------------------------------------------------
+    // Packing
+
+    private Plan pack(List<List<Job>> trips, Random random, int start) {
+        // fewest moves per delivery first, so the budgets go to the trips that deliver the most for them
+        double[] keys = new double[trips.size()];
+        Integer[] sorted = new Integer[trips.size()];
+        for (int i = 0; i < trips.size(); i++) {
+            double perDelivery = movesOf(trips.get(i)) / (double) trips.get(i).size();
+            keys[i] = (start == 0) ? perDelivery : perDelivery * (1.0 + NOISE * random.nextDouble());
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparingDouble((Integer i) -> keys[i]).thenComparingInt(i -> i));
+
+        List<List<List<Job>>> drones = new ArrayList<>();
+        for (int drone = 0; drone < this.drones; drone++) {
+            drones.add(new ArrayList<>());
+        }
+        int[] used = new int[this.drones];
+        List<Job> left = new ArrayList<>();
+        for (int i: sorted) {
+            List<Job> trip = trips.get(i);
+            if (!place(trip, drones, used)) {
+                // a trip that does not fit anywhere may still fit order by order
+                left.addAll(trip);
+            }
+        }
+        List<Job> undelivered = new ArrayList<>();
+        for (Job job: left) {
+            if (!join(job, drones, used) && !place(new ArrayList<>(List.of(job)), drones, used)) {
+                undelivered.add(job);
+            }
+        }
+
+        balance(drones, used);
+
+        int moves = 0;
+        int busiest = 0;
+        for (int drone = 0; drone < this.drones; drone++) {
+            moves += used[drone];
+            busiest = Math.max(busiest, used[drone]);
+        }
+        return new Plan(drones, undelivered, moves, jobsOf(drones), busiest, start);
+    }
+
+    // best fit: the drone with the least budget left that the trip fits in
+    private boolean place(List<Job> trip, List<List<List<Job>>> drones, int[] used) {
+        int moves = movesOf(trip);
+        int best = -1;
+        for (int drone = 0; drone < this.drones; drone++) {
+            if (isFlyable(used[drone] + moves) && (best < 0 || used[drone] > used[best])) {
+                best = drone;
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        drones.get(best).add(trip);
+        used[best] += moves;
+        return true;
+    }
+
+    // adds an order to a trip with room for it, where it costs the fewest extra moves
+    private boolean join(Job job, List<List<List<Job>>> drones, int[] used) {
+        int bestDrone = -1;
+        int bestTrip = -1;
+        int bestExtra = Integer.MAX_VALUE;
+        for (int drone = 0; drone < this.drones; drone++) {
+            List<List<Job>> trips = drones.get(drone);
+            for (int i = 0; i < trips.size(); i++) {
+                if (trips.get(i).size() >= this.capacity) {
+                    continue;
+                }
+                int extra = movesOf(union(trips.get(i), List.of(job))) - movesOf(trips.get(i));
+                if (isFlyable(used[drone] + extra) && extra < bestExtra) {
+                    bestDrone = drone;
+                    bestTrip = i;
+                    bestExtra = extra;
+                }
+            }
+        }
+        if (bestDrone < 0) {
+            return false;
+        }
+        drones.get(bestDrone).get(bestTrip).add(job);
+        used[bestDrone] += bestExtra;
+        return true;
+    }
+
+    // moves or swaps trips of the busiest drone while that makes it less busy, so the deliveries of the day are done
+    // as early as the fleet can do them
+    private void balance(List<List<List<Job>>> drones, int[] used) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int busiest = 0;
+            for (int drone = 1; drone < this.drones; drone++) {
+                if (used[drone] > used[busiest]) {
+                    busiest = drone;
+                }
+            }
+            List<List<Job>> trips = drones.get(busiest);
+            for (int other = 0; other < this.drones && !improved; other++) {
+                if (other == busiest) {
+                    continue;
+                }
+                for (int i = 0; i < trips.size() && !improved; i++) {
+                    int moves = movesOf(trips.get(i));
+                    if (used[other] + moves < used[busiest]) {
+                        drones.get(other).add(trips.remove(i));
+                        used[busiest] -= moves;
+                        used[other] += moves;
+                        improved = true;
+                        continue;
+                    }
+                    List<List<Job>> otherTrips = drones.get(other);
+                    for (int j = 0; j < otherTrips.size() && !improved; j++) {
+                        int difference = moves - movesOf(otherTrips.get(j));
+                        if (difference > 0 && used[other] + difference < used[busiest]) {
+                            List<Job> trip = trips.get(i);
+                            trips.set(i, otherTrips.get(j));
+                            otherTrips.set(j, trip);
+                            used[busiest] -= difference;
+                            used[other] += difference;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int jobsOf(List<List<List<Job>>> drones) {
+        int jobs = 0;
+        for (List<List<Job>> trips: drones) {
+            for (List<Job> trip: trips) {
+                jobs += trip.size();
+            }
+        }
+        return jobs;
+    }
+
+    //------------------------------------------------------------------
+    // Running a day
+
+    /**
+     * Dispatches the valid orders of a date, reports the moves and deliveries of every drone, and writes the plan to
+     * dispatch-[date].json. The move budget and capacity are read from the {@value #MOVE_BUDGET_PROPERTY} and
+     * {@value #CAPACITY_PROPERTY} system properties, defaulting to {@link SystemConstants#DRONE_MAX_MOVES} and
+     * {@value #DEFAULT_CAPACITY}.
+     * @param url Valid url to the homepage of a REST server.
+     * @param date Valid date.
+     * @param drones The number of drones.
+     * @return The plan.
+     * */
+    public static Dispatch run(String url, String date, int drones) {
+        int moveBudget = Integer.getInteger(MOVE_BUDGET_PROPERTY, SystemConstants.DRONE_MAX_MOVES);
+        int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+        ReferenceData referenceData = ReferenceData.fetch(url);
+        FleetDispatcher fleetDispatcher = new FleetDispatcher(referenceData, drones, moveBudget, capacity);
+
+        List<Order> orders = new ArrayList<>();
+        try (InputStream input = Context.openService(url, "orders/" + date)) {
+            orders.addAll(List.of(Context.getObjectMapper().readValue(input, Order[].class)));
+        }
+        catch (IOException e) {
+            System.err.println("Error: invalid url/endpoint provided. Please try different arguments");
+        }
+        List<Order> valid = new OrderValidator().validateAll(orders, referenceData.getMenuIndex()).stream()
+                .filter(order -> order.getOrderValidationCode().equals(OrderValidationCode.NO_ERROR))
+                .toList();
+
+        long start_time = System.nanoTime();
+        Dispatch dispatch = fleetDispatcher.dispatch(valid);
+        long end_time = System.nanoTime();
+        System.out.println("Dispatching " + valid.size() + " orders to " + drones + " drones took: "
+                + ((end_time - start_time) / 1_000_000_000.0) + "s");
+        for (DroneSchedule schedule: dispatch.drones()) {
+            System.out.println("Drone " + schedule.drone() + ": " + schedule.trips().size() + " trips, "
+                    + schedule.moves() + " moves, " + schedule.deliveries() + " deliveries");
+        }
+        System.out.println("Fleet: " + dispatch.deliveries() + " deliveries, " + dispatch.undelivered().size()
+                + " undelivered, " + dispatch.moves() + " moves, "
+                + (dispatch.moves() == 0 ? 0.0 : 1000.0 * dispatch.deliveries() / dispatch.moves())
+                + " deliveries per 1000 moves, busiest drone " + busiestOf(dispatch) + " moves");
+        referenceData.saveRoutes();
+        write("dispatch-" + date + ".json", dispatch);
+        return dispatch;
+    }
+
+    private static int busiestOf(Dispatch dispatch) {
+        return dispatch.drones().stream().mapToInt(DroneSchedule::moves).max().orElse(0);
+    }
+
+    // the plan with order numbers in place of the orders
+    private static void write(String path, Dispatch dispatch) {
+        List<Object> drones = new ArrayList<>();
+        for (DroneSchedule schedule: dispatch.drones()) {
+            List<Object> trips = new ArrayList<>();
+            for (Trip trip: schedule.trips()) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("orderNos", trip.orders().stream().map(Order::getOrderNo).toList());
+                json.put("stops", trip.stops());
+                json.put("moves", trip.moves());
+                trips.add(json);
+            }
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("drone", schedule.drone());
+            json.put("moves", schedule.moves());
+            json.put("deliveries", schedule.deliveries());
+            json.put("trips", trips);
+            drones.add(json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("moves", dispatch.moves());
+        json.put("deliveries", dispatch.deliveries());
+        json.put("undelivered", dispatch.undelivered().stream().map(Order::getOrderNo).toList());
+        json.put("drones", drones);
+        try {
+            new ObjectMapper().writeValue(new File(path), json);
+        }
+        catch (IOException e) {
+            System.err.println("Error writing to: " + path + ". Program terminating...");
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.serializers.RollingSerializer;
+import uk.ac.ed.inf.validator.MenuIndex;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Processes orders as they arrive instead of a day at a time: every order is validated and routed as soon as it is
+ * read, and appended to the rolling outputs of a {@link RollingSerializer}. Orders are JSON lines, one {@link Order}
+ * per line, read from either
+ * <ul>
+ *     <li>a file that other processes append to, which is tailed: a line is only read once its newline is there.</li>
+ *     <li>a spool directory, where every *.jsonl file is read whole and then moved to its {@value #PROCESSED_DIRECTORY}
+ *     subdirectory. Files should be moved into the directory once written, not written in place.</li>
+ * </ul>
+ * How far every file has been read is kept in a checkpoint, [file].checkpoint next to a tailed file or
+ * {@value #CHECKPOINT_FILE} in a spool directory, so that a restarted feed carries on where it stopped. The checkpoint
+ * is saved after the outputs are flushed, so an order is never lost, but the orders of a poll that was cut short are
+ * processed again.
+ * */
+public class OrderFeed {
+    public static final String POLL_INTERVAL_PROPERTY = "pizzadronz.feed.pollMs";
+    public static final String CHECKPOINT_FILE = ".checkpoint";
+    public static final String PROCESSED_DIRECTORY = "processed";
+    private static final long DEFAULT_POLL_INTERVAL = 200;
+
+    private final ReferenceData referenceData;
+    private final Path source;
+    private final boolean spool;
+    private final Path checkpointFile;
+    // bytes read of every file by name
+    private final Properties checkpoint = new Properties();
+    private final RollingSerializer serializer;
+    private final OrderValidator orderValidator = new OrderValidator();
+    private final ObjectMapper objectMapper = Context.getObjectMapper();
+    private volatile boolean running = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    // orders processed since the outputs were last flushed
+    private int pending = 0;
+
+    /**
+     * @param referenceData The state every order is validated and routed with.
+     * @param source A spool directory, or the file to tail, which does not have to exist yet.
+     * @param outputDirectory Where the rolling outputs are written.
+     * */
+    public OrderFeed(ReferenceData referenceData, Path source, Path outputDirectory) throws IOException {
+        this.referenceData = referenceData;
+        this.source = source;
+        this.spool = Files.isDirectory(source);
+        this.checkpointFile = this.spool ? source.resolve(CHECKPOINT_FILE)
+                : source.resolveSibling(source.getFileName() + ".checkpoint");
+        if (Files.isRegularFile(this.checkpointFile)) {
+            try (InputStream input = Files.newInputStream(this.checkpointFile)) {
+                this.checkpoint.load(input);
+            }
+        }
+        this.serializer = new RollingSerializer(outputDirectory);
+    }
+
+    /**
+     * Polls the source every {@value #POLL_INTERVAL_PROPERTY} milliseconds (200 by default) until {@link #stop()} is
+     * called, then closes the feed.
+     * */
+    public void run() {
+        long pollInterval = Math.max(1, Long.getLong(POLL_INTERVAL_PROPERTY, DEFAULT_POLL_INTERVAL));
+        System.out.println("Watching " + this.source + " for orders");
+        try {
+            while (this.running) {
+                try {
+                    poll();
+                }
+                catch (IOException e) {
+                    System.err.println("Error: could not read orders from " + this.source + ": " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(pollInterval);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        finally {
+            close();
+            this.stopped.countDown();
+        }
+    }
+
+    /**
+     * Makes {@link #run()} return after its current poll, and waits up to five seconds for it to.
+     * */
+    public void stop() {
+        this.running = false;
+        try {
+            this.stopped.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes every order that arrived since the last poll.
+     * @return The number of orders processed.
+     * */
+    public int poll() throws IOException {
+        long start_time = System.nanoTime();
+        int count = 0;
+        try {
+            if (this.spool) {
+                for (Path file: listSpool()) {
+                    count += read(file, true);
+                    // the orders are out before the file is moved, and the file is moved before it is forgotten
+                    flush();
+                    Path processed = Files.createDirectories(this.source.resolve(PROCESSED_DIRECTORY));
+                    Files.move(file, processed.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                    this.checkpoint.remove(file.getFileName().toString());
+                    saveCheckpoint();
+                }
+            }
+            else if (Files.isRegularFile(this.source)) {
+                count += read(this.source, false);
+            }
+        }
+        finally {
+            flush();
+        }
+        if (count > 0) {
+            long end_time = System.nanoTime();
+            System.out.println("Processing " + count + " orders from " + this.source + " took: "
+                    + ((end_time - start_time) / 1_000_000_000.0) + "s");
+        }
+        return count;
+    }
+
+    private List<Path> listSpool() throws IOException {
+        try (Stream<Path> files = Files.list(this.source)) {
+            return files.filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(".jsonl"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // processes the lines of a file after its checkpoint, and the last line without a newline if the file is complete
+    private int read(Path file, boolean complete) throws IOException {
+        String name = file.getFileName().toString();
+        long offset = Long.parseLong(this.checkpoint.getProperty(name, "0"));
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                System.err.println("Warning: " + file + " is shorter than its checkpoint, reading it from the start");
+                offset = 0;
+            }
+            InputStream input = new BufferedInputStream(Channels.newInputStream(channel.position(offset)));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = offset;
+            for (int next = input.read(); next != -1; next = input.read()) {
+                position++;
+                if (next != '\n') {
+                    line.write(next);
+                    continue;
+                }
+                count += process(line.toByteArray(), file, offset);
+                line.reset();
+                offset = position;
+            }
+            if (complete && line.size() > 0) {
+                count += process(line.toByteArray(), file, offset);
+                offset = position;
+            }
+        }
+        finally {
+            this.checkpoint.setProperty(name, Long.toString(offset));
+        }
+        return count;
+    }
+
+    // validates and routes the order on a line, returns 1 if there was one
+    private int process(byte[] line, Path file, long offset) throws IOException {
+        String text = new String(line, StandardCharsets.UTF_8).strip();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        Order order;
+        try {
+            order = this.objectMapper.readValue(text, Order.class);
+        }
+        catch (JsonProcessingException e) {
+            order = null;
+        }
+        if (order == null) {
+            System.err.println("Warning: skipping the line at byte " + offset + " of " + file + ", it is not an order");
+            return 0;
+        }
+        MenuIndex menuIndex = this.referenceData.getMenuIndex();
+        LngLat src = new LngLat(0.0, 0.0);
+        LngLat dest = new LngLat(0.0, 0.0);
+        LngLat[] dronePath = new LngLat[0];
+        try {
+            this.orderValidator.validateOrder(order, menuIndex);
+            if (order.getOrderValidationCode().equals(OrderValidationCode.NO_ERROR)) {
+                src = Context.DEPOT;
+                dest = Context.getRestaurantFromOrder(order, menuIndex).location();
+                dronePath = this.referenceData.getRoute(src, dest).toArray(new LngLat[0]);
+            }
+        }
+        catch (RuntimeException e) {
+            // an order the validator or router chokes on must not stop the feed, nor stop it again after a restart
+            System.err.println("Warning: skipping the order at byte " + offset + " of " + file
+                    + ", it could not be processed: " + e);
+            return 0;
+        }
+        this.serializer.add(order, src, dest, dronePath);
+        this.pending++;
+        return 1;
+    }
+
+    // the outputs first, then the checkpoint that covers them
+    private void flush() throws IOException {
+        if (this.pending == 0) {
+            return;
+        }
+        this.serializer.flush();
+        saveCheckpoint();
+        this.pending = 0;
+    }
+
+    private void saveCheckpoint() throws IOException {
+        Path directory = this.checkpointFile.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, this.checkpointFile.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            this.checkpoint.store(out, "bytes read of " + this.source);
+        }
+        Files.move(temp, this.checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Flushes and closes the outputs, saves the checkpoint and the routes found.
+     * */
+    public void close() {
+        try {
+            flush();
+            this.serializer.close();
+        }
+        catch (IOException e) {
+            System.err.println("Error: could not finish the outputs of " + this.source + ": " + e.getMessage());
+        }
+        this.referenceData.saveRoutes();
+    }
+}
@@ -0,0 +1,209 @@
+package uk.ac.ed.inf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last body of each reference data endpoint (/restaurants, /noFlyZones, /centralArea) on disk together with
+ * the ETag and Last-Modified date it was sent with, so that later runs only ask the server whether it changed. A 304
+ * answer is served from disk and an unchanged world costs one small request per endpoint instead of a download.
+ * If the server cannot be reached, times out or fails with a 5xx status, the copy on disk is used, with a warning. Any
+ * other answer, such as a 404, fails the fetch as it would without the cache: the request itself is wrong, and the
+ * copy on disk would hide that.
+ * <p>
+ * Every endpoint has two files in the directory, named after the endpoint and a hash of the server url: the body, and
+ * a properties file with its validators and the SHA-256 of the body. A body that does not match its hash is ignored.
+ * Files are replaced atomically, so runs sharing the directory never see half-written entries.
+ * </p>
+ * The directory is set with the {@value #DIRECTORY_PROPERTY} system property, defaulting to
+ * {@value #DEFAULT_DIRECTORY}. An empty value disables the cache.
+ * */
+public final class ReferenceCache {
+    public static final String DIRECTORY_PROPERTY = "pizzadronz.referenceCache";
+    public static final String DEFAULT_DIRECTORY = "reference-cache";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String SHA_256 = "sha256";
+
+    // null if disabled
+    private final Path directory;
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * @param directory Where the entries are kept, created when the first one is stored. Null to disable the cache.
+     * */
+    public ReferenceCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The cache configured by the system properties, see {@link ReferenceCache}.
+     * */
+    public static ReferenceCache fromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+        return new ReferenceCache(directory.isBlank() ? null : Paths.get(directory));
+    }
+
+    private record Entry(byte[] body, String etag, String lastModified) {}
+
+    /**
+     * Fetches an endpoint, revalidating the copy on disk if there is one.
+     * @return The current body of the endpoint. Fails with an {@link IOException} if it could not be fetched and there
+     * is no copy on disk either, or if the server answered with a status below 500.
+     * */
+    public CompletableFuture<byte[]> fetchAsync(RestClient restClient, String url, String endpoint) {
+        Entry entry = load(url, endpoint);
+        String etag = (entry == null) ? null : entry.etag();
+        String lastModified = (entry == null) ? null : entry.lastModified();
+        return restClient.fetchAsync(url, endpoint, etag, lastModified).handle((response, error) -> {
+            if (error == null && response.isNotModified()) {
+                this.notModified.incrementAndGet();
+                return entry.body();
+            }
+            if (error == null) {
+                this.downloaded.incrementAndGet();
+                store(url, endpoint, new Entry(response.body(), response.etag(), response.lastModified()));
+                return response.body();
+            }
+            Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+            if (entry != null && isUnavailable(cause)) {
+                System.err.println("Warning: could not fetch /" + endpoint + " (" + cause.getMessage()
+                        + "), using the copy cached in " + this.directory);
+                this.stale.incrementAndGet();
+                return entry.body();
+            }
+            throw (error instanceof CompletionException) ? (CompletionException) error : new CompletionException(error);
+        });
+    }
+
+    // connection failures, timeouts and server errors, but not answers about the request such as a 404
+    private static boolean isUnavailable(Throwable cause) {
+        if (cause instanceof RestClient.StatusException statusException) {
+            return statusException.getStatus() >= 500;
+        }
+        return cause instanceof IOException && !(cause instanceof MalformedURLException);
+    }
+
+    // the entry's files are <endpoint>-<url hash>.json and .properties
+    private Path file(String url, String endpoint, String extension) {
+        String name = endpoint.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + sha256(url.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return this.directory.resolve(name + extension);
+    }
+
+    private Entry load(String url, String endpoint) {
+        if (this.directory == null) {
+            return null;
+        }
+        Path bodyFile = file(url, endpoint, ".json");
+        Path metaFile = file(url, endpoint, ".properties");
+        if (!Files.isRegularFile(bodyFile) || !Files.isRegularFile(metaFile)) {
+            return null;
+        }
+        try (InputStream input = Files.newInputStream(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(input);
+            byte[] body = Files.readAllBytes(bodyFile);
+            if (!sha256(body).equals(meta.getProperty(SHA_256))) {
+                System.err.println("Warning: ignoring corrupt reference cache entry " + bodyFile);
+                return null;
+            }
+            return new Entry(body, meta.getProperty(ETAG), meta.getProperty(LAST_MODIFIED));
+        }
+        catch (IOException | IllegalArgumentException e) {
+            System.err.println("Warning: ignoring unreadable reference cache entry " + bodyFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String url, String endpoint, Entry entry) {
+        if (this.directory == null) {
+            return;
+        }
+        Properties meta = new Properties();
+        meta.setProperty(SHA_256, sha256(entry.body()));
+        if (entry.etag() != null) {
+            meta.setProperty(ETAG, entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            meta.setProperty(LAST_MODIFIED, entry.lastModified());
+        }
+        Path bodyFile = file(url, endpoint, ".json");
+        Path metaFile = file(url, endpoint, ".properties");
+        try {
+            Files.createDirectories(this.directory);
+            // the body first: until the new properties are in place, the old ones do not match it and it is ignored
+            replace(bodyFile, entry.body());
+            Path temp = Files.createTempFile(this.directory, metaFile.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                meta.store(out, url + "/" + endpoint);
+            }
+            Files.move(temp, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            System.err.println("Error: could not write reference cache entry " + bodyFile + ": " + e.getMessage());
+        }
+    }
+
+    private void replace(Path file, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The SHA-256 of the bytes as lower case hex.
+     * */
+    static String sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part: parts) {
+                // length first, so that moving bytes from one part to the next changes the hash
+                digest.update(Integer.toString(part.length).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(part);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public long getDownloaded() {
+        return this.downloaded.get();
+    }
+    public long getNotModified() {
+        return this.notModified.get();
+    }
+    public long getStale() {
+        return this.stale.get();
+    }
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    @Override
+    public String toString() {
+        return "ReferenceCache{downloaded=" + getDownloaded() + ", notModified=" + getNotModified() + ", stale="
+                + getStale() + "}";
+    }
+}
@@ -0,0 +1,232 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.LatticePlanner;
+import uk.ac.ed.inf.pathfinder.RouteCache;
+import uk.ac.ed.inf.pathfinder.RouteStore;
+import uk.ac.ed.inf.pathfinder.RouteTable;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+import uk.ac.ed.inf.validator.MenuIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds everything that is the same for every date: the restaurants, the central area, the no-fly zones and the
+ * state derived from them (the {@link MenuIndex}, the static {@link VisibilityGraph}, the {@link RouteTable} between
+ * {@link Context#DEPOT} and the restaurants, and the {@link RouteCache}).
+ * It is fetched once and can then be shared by any number of {@link Context}s, including ones running on different
+ * threads: the data is never modified after {@link #fetch(String)} and the route cache is thread-safe.
+ * */
+public class ReferenceData {
+    // routes are persisted here between runs, routes built by the greedy planner in their own file
+    public static final String ROUTE_STORE = "routes.bin";
+    public static final String GREEDY_ROUTE_STORE = "routes-greedy.bin";
+
+    private final Restaurant[] restaurants;
+    // pizza name to restaurant, shared by validation and routing
+    private final MenuIndex menuIndex;
+    private final NamedRegion centralArea;
+    private final NamedRegion[] noFlyZones;
+    private final VisibilityGraph visibilityGraph;
+    // shortest paths between the depot and every restaurant, so routing an order needs no search
+    private final RouteTable routeTable;
+    private final RouteStore routeStore;
+    private final RouteCache routeCache;
+
+    // the reference data of the last successful fetch, and the hash of the bodies it was built from
+    private record Snapshot(String contentHash, ReferenceData referenceData) {}
+    private static final AtomicReference<Snapshot> LAST = new AtomicReference<>();
+
+    /**
+     * Builds the routing state for the given data. The {@link RouteStore} is opened at {@link #ROUTE_STORE}, or at
+     * {@link #GREEDY_ROUTE_STORE} when {@link DronePathFinder#planner()} is the greedy planner.
+     * */
+    public ReferenceData(Restaurant[] restaurants, NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this(restaurants, centralArea, noFlyZones, Paths.get(
+                DronePathFinder.GREEDY_PLANNER.equals(DronePathFinder.planner()) ? GREEDY_ROUTE_STORE : ROUTE_STORE));
+    }
+
+    /**
+     * Builds the routing state for the given data, with the {@link RouteStore} opened at the given file.
+     * @param routeStore Where routes are loaded from and saved to, created on the first save.
+     * */
+    public ReferenceData(Restaurant[] restaurants, NamedRegion centralArea, NamedRegion[] noFlyZones, Path routeStore) {
+        this.restaurants = restaurants;
+        this.menuIndex = MenuIndex.of(restaurants);
+        this.centralArea = centralArea;
+        this.noFlyZones = noFlyZones;
+        // build (or reuse) the obstacle graph once, only src and dest are added per order
+        long graph_start_time = System.nanoTime();
+        this.visibilityGraph = VisibilityGraph.of(new ZoneSet(centralArea, noFlyZones));
+        long graph_end_time = System.nanoTime();
+        System.out.println("Building visibility graph took: " + ((graph_end_time - graph_start_time) / 1_000_000_000.0) + "s");
+        LngLat[] locations = new LngLat[restaurants.length];
+        for (int i = 0; i < restaurants.length; i++) {
+            locations[i] = restaurants[i].location();
+        }
+        long table_start_time = System.nanoTime();
+        this.routeTable = RouteTable.build(this.visibilityGraph, Context.DEPOT, locations);
+        long table_end_time = System.nanoTime();
+        System.out.println("Building route table took: " + ((table_end_time - table_start_time) / 1_000_000_000.0) + "s");
+        // every order to the same restaurant shares one route, and routes from earlier runs are loaded from disk
+        this.routeStore = RouteStore.open(routeStore, this.visibilityGraph.getZoneSet());
+        this.routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY, this.routeStore);
+    }
+
+    /**
+     * Retrieves /restaurants, /noFlyZones and /centralArea from the REST server, all at once with the shared
+     * {@link RestClient}. Copies from earlier runs in the {@link ReferenceCache} are only revalidated, and if the
+     * three bodies are the same as in the last fetch of this JVM, the reference data built then is returned as it is,
+     * so an unchanged world is neither parsed nor preprocessed again. If the URL is invalid, or an
+     * endpoint is empty, notify the user with {@link System#err} and continue with empty values.
+     * @param url Valid url to the homepage of a REST server.
+     * @return The reference data of that server.
+     * */
+    public static ReferenceData fetch(String url) {
+        // initialise values
+        Restaurant[] restaurants = new Restaurant[]{};
+        NamedRegion[] noFlyZones = new NamedRegion[]{};
+        NamedRegion centralArea = new NamedRegion("", new LngLat[0]);
+
+        // request all three at once, they are independent, and set up the parsing meanwhile
+        RestClient restClient = RestClient.shared();
+        ReferenceCache referenceCache = ReferenceCache.fromSystemProperties();
+        CompletableFuture<byte[]> restaurantsResponse = referenceCache.fetchAsync(restClient, url, "restaurants");
+        CompletableFuture<byte[]> noFlyZonesResponse = referenceCache.fetchAsync(restClient, url, "noFlyZones");
+        CompletableFuture<byte[]> centralAreaResponse = referenceCache.fetchAsync(restClient, url, "centralArea");
+        ObjectMapper objectMapper = Context.getObjectMapper();
+        try {
+            byte[] restaurantsBody = readBody(url, "restaurants", restaurantsResponse);
+            byte[] noFlyZonesBody = readBody(url, "noFlyZones", noFlyZonesResponse);
+            byte[] centralAreaBody = readBody(url, "centralArea", centralAreaResponse);
+            System.out.println("Reference cache: " + referenceCache);
+            // the routing state depends on the planner too, see the constructor
+            String contentHash = ReferenceCache.sha256(restaurantsBody, noFlyZonesBody, centralAreaBody,
+                    DronePathFinder.planner().getBytes(StandardCharsets.UTF_8));
+            Snapshot last = LAST.get();
+            if (last != null && last.contentHash().equals(contentHash)) {
+                System.out.println("Reference data unchanged, reusing it");
+                return last.referenceData();
+            }
+
+            // read values
+            restaurants = objectMapper.readValue(restaurantsBody, Restaurant[].class);
+            noFlyZones = objectMapper.readValue(noFlyZonesBody, NamedRegion[].class);
+            centralArea = objectMapper.readValue(centralAreaBody, NamedRegion.class);
+
+            // notify if values are empty
+            if (restaurants.length == 0) {
+                System.err.println("Warning: /restaurants is empty");
+            }
+            if (noFlyZones.length == 0) {
+                System.err.println("Warning: /noFlyZones is empty");
+            }
+            if (centralArea.vertices().length == 0) {
+                System.err.println("Warning: /centralArea is empty");
+            }
+            ReferenceData referenceData = new ReferenceData(restaurants, centralArea, noFlyZones);
+            LAST.set(new Snapshot(contentHash, referenceData));
+            return referenceData;
+        }
+        catch (Exception e) {
+            System.err.println("Error: invalid url/endpoint provided. Please try different arguments");
+        }
+        return new ReferenceData(restaurants, centralArea, noFlyZones);
+    }
+
+    // waits for an endpoint's body, notifying the user if it could not be fetched
+    private static byte[] readBody(String url, String endpoint, CompletableFuture<byte[]> response) throws IOException {
+        try {
+            return response.get();
+        }
+        catch (ExecutionException e) {
+            System.err.println("Error: /" + endpoint + "/ is not a valid endpoint on: " + url);
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Finds the complete drone route from src to dest and back, reusing a cached or stored route when there is one.
+     * The waypoints come from the {@link RouteTable} when src and dest are both in it, otherwise they are searched for.
+     * Safe to call from several threads at once.
+     * */
+    public List<LngLat> getRoute(LngLat src, LngLat dest) {
+        return this.routeCache.getRoute(src, dest, this.visibilityGraph.getZoneSet(), () -> computeRoute(src, dest));
+    }
+
+    /**
+     * Finds the complete drone route from src to dest and back as {@link #getRoute(LngLat, LngLat)} does, but always
+     * computes it and neither caches nor stores it.
+     * @return The route, or an empty list if there is no way from src to dest.
+     * */
+    public List<LngLat> computeRoute(LngLat src, LngLat dest) {
+        return computeRoute(src, dest, LatticePlanner.DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * Same as {@link #computeRoute(LngLat, LngLat)}, but the {@link LatticePlanner} gives up after maxExpansions
+     * positions and the route follows the waypoints greedily instead.
+     * */
+    public List<LngLat> computeRoute(LngLat src, LngLat dest, int maxExpansions) {
+        DronePathFinder dronePathFinder = new DronePathFinder(this.visibilityGraph, src, dest, maxExpansions);
+        LngLat[] waypoints = this.routeTable.waypoints(src, dest);
+        if (waypoints == null || waypoints.length == 0) {
+            waypoints = dronePathFinder.pathfind();
+        }
+        if (waypoints.length == 0) {
+            // A* found no way to dest
+            return List.of();
+        }
+        return dronePathFinder.getRoute(waypoints);
+    }
+
+    /**
+     * Writes newly computed routes to the {@link RouteStore} so the next run can reuse them.
+     * */
+    public void saveRoutes() {
+        this.routeStore.save();
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public Restaurant[] getRestaurants() {
+        return this.restaurants;
+    }
+    public MenuIndex getMenuIndex() {
+        return this.menuIndex;
+    }
+    public NamedRegion getCentralArea() {
+        return this.centralArea;
+    }
+    public NamedRegion[] getNoFlyZones() {
+        return this.noFlyZones;
+    }
+    public VisibilityGraph getVisibilityGraph() {
+        return this.visibilityGraph;
+    }
+    public RouteTable getRouteTable() {
+        return this.routeTable;
+    }
+    public RouteCache getRouteCache() {
+        return this.routeCache;
+    }
+    public RouteStore getRouteStore() {
+        return this.routeStore;
+    }
+}
@@ -0,0 +1,305 @@
+package uk.ac.ed.inf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches endpoints of the REST server, several at the same time with {@link #openAsync(String, String)}. Connections
+ * are kept alive and reused between requests, and responses may be gzip compressed. A request that times out, cannot
+ * connect, or gets a 5xx or 429 status is retried, waiting twice as long before every retry.
+ * <p>
+ * Requests go through {@link HttpURLConnection}, whose keep-alive cache pools connections per host. The
+ * java.net.http client would do the same, but takes most of a second to start in a fresh JVM, more than it saves on
+ * the few requests a run makes.
+ * </p>
+ * The {@link #shared() shared} client is configured with system properties:
+ * <ul>
+ *     <li>{@value #CONNECT_TIMEOUT_PROPERTY}: how long to wait for a connection, in milliseconds. Defaults to 5000.</li>
+ *     <li>{@value #READ_TIMEOUT_PROPERTY}: how long to wait for the server to send anything, in milliseconds. Defaults
+ *     to 30000.</li>
+ *     <li>{@value #RETRIES_PROPERTY}: how many times a failed request is retried. Defaults to 3.</li>
+ *     <li>{@value #BACKOFF_PROPERTY}: how long to wait before the first retry, in milliseconds. Defaults to 200.</li>
+ * </ul>
+ * */
+public final class RestClient {
+    public static final String CONNECT_TIMEOUT_PROPERTY = "pizzadronz.http.connectTimeoutMs";
+    public static final String READ_TIMEOUT_PROPERTY = "pizzadronz.http.readTimeoutMs";
+    public static final String RETRIES_PROPERTY = "pizzadronz.http.retries";
+    public static final String BACKOFF_PROPERTY = "pizzadronz.http.backoffMs";
+    private static final long DEFAULT_CONNECT_TIMEOUT = 5_000;
+    private static final long DEFAULT_READ_TIMEOUT = 30_000;
+    private static final int DEFAULT_RETRIES = 3;
+    private static final long DEFAULT_BACKOFF = 200;
+
+    // requests wait on the network, not the cpu, so there is a thread per request in flight; daemon threads so an
+    // abandoned request never keeps the JVM alive
+    private static final ExecutorService FETCHERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "rest-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static RestClient shared;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int retries;
+    private final long backoffMillis;
+
+    /**
+     * @param connectTimeout How long to wait for a connection.
+     * @param readTimeout How long to wait for the server to send anything, the response headers or more of the body.
+     * @param retries How many times a failed request is retried, 0 to never retry.
+     * @param backoff How long to wait before the first retry, doubled before every further retry.
+     * */
+    public RestClient(Duration connectTimeout, Duration readTimeout, int retries, Duration backoff) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("Retries must not be negative, got: " + retries);
+        }
+        this.connectTimeout = (int) Math.min(Integer.MAX_VALUE, connectTimeout.toMillis());
+        this.readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout.toMillis());
+        this.retries = retries;
+        this.backoffMillis = backoff.toMillis();
+    }
+
+    /**
+     * @return The client every {@link Context} and {@link ReferenceData} fetches with, configured by the system
+     * properties, see {@link RestClient}.
+     * */
+    public static synchronized RestClient shared() {
+        if (shared == null) {
+            // values that are not numbers fall back to the defaults
+            long connectTimeout = Long.getLong(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT);
+            long readTimeout = Long.getLong(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT);
+            int retries = Integer.getInteger(RETRIES_PROPERTY, DEFAULT_RETRIES);
+            long backoff = Long.getLong(BACKOFF_PROPERTY, DEFAULT_BACKOFF);
+            shared = new RestClient(Duration.ofMillis(Math.max(1, connectTimeout)),
+                    Duration.ofMillis(Math.max(1, readTimeout)), Math.max(0, retries),
+                    Duration.ofMillis(Math.max(0, backoff)));
+        }
+        return shared;
+    }
+
+    /**
+     * Requests an endpoint without waiting for the response, so that several endpoints can be fetched at once.
+     * @param url The homepage of the REST server.
+     * @param endpoint The endpoint, appended to the url after a '/'.
+     * @return The response body, already decompressed, once the response headers have arrived. Fails with an
+     * {@link IOException} if the endpoint could not be fetched, even after retrying, a {@link StatusException} if the
+     * server answered with an error status.
+     * */
+    public CompletableFuture<InputStream> openAsync(String url, String endpoint) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return open(url, endpoint);
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, FETCHERS);
+    }
+
+    /**
+     * Same as {@link #openAsync(String, String)}, but waits for the response.
+     * */
+    public InputStream open(String url, String endpoint) throws IOException {
+        return body(connect(url, endpoint, null, null));
+    }
+
+    /**
+     * A whole response to a request that may be conditional.
+     * @param status 200, or 304 if the copy the request was made for is still current, in which case body is null.
+     * @param etag The ETag of the response, or null if the server sent none.
+     * @param lastModified The Last-Modified date of the response, or null if the server sent none.
+     * */
+    public record Response(int status, byte[] body, String etag, String lastModified) {
+        public boolean isNotModified() {
+            return this.status == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+    }
+
+    /**
+     * The server answered, but with a status other than 200, or 304 to a conditional request.
+     * */
+    public static final class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        StatusException(int status, String location) {
+            super("HTTP " + status + " from " + location);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return this.status;
+        }
+    }
+
+    /**
+     * Requests an endpoint unless a copy the caller already has is still current, without waiting for the response.
+     * @param etag The ETag of the copy, sent as If-None-Match, or null.
+     * @param lastModified The Last-Modified date of the copy, sent as If-Modified-Since, or null.
+     * @return The whole response, read in the background. Fails with an {@link IOException} like
+     * {@link #openAsync(String, String)}.
+     * */
+    public CompletableFuture<Response> fetchAsync(String url, String endpoint, String etag, String lastModified) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                HttpURLConnection connection = connect(url, endpoint, etag, lastModified);
+                String responseEtag = connection.getHeaderField("ETag");
+                String responseLastModified = connection.getHeaderField("Last-Modified");
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    discard(connection);
+                    return new Response(HttpURLConnection.HTTP_NOT_MODIFIED, null,
+                            (responseEtag != null) ? responseEtag : etag,
+                            (responseLastModified != null) ? responseLastModified : lastModified);
+                }
+                try (InputStream body = body(connection)) {
+                    return new Response(HttpURLConnection.HTTP_OK, body.readAllBytes(), responseEtag, responseLastModified);
+                }
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, FETCHERS);
+    }
+
+    // makes the request, retrying as configured, and returns the connection once a 200 or 304 has arrived
+    private HttpURLConnection connect(String url, String endpoint, String etag, String lastModified) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return send(url + "/" + endpoint, etag, lastModified);
+            }
+            catch (RetryableException e) {
+                if (attempt >= this.retries) {
+                    throw e.getCause();
+                }
+            }
+            // wait backoff, 2 * backoff, 4 * backoff, ... before retrying
+            try {
+                Thread.sleep(this.backoffMillis << Math.min(attempt, 20));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while fetching " + url + "/" + endpoint, e);
+            }
+        }
+    }
+
+    // a failure that may go away when the request is made again
+    private static final class RetryableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RetryableException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private HttpURLConnection send(String location, String etag, String lastModified) throws IOException, RetryableException {
+        HttpURLConnection connection;
+        try {
+            connection = (HttpURLConnection) URI.create(location).toURL().openConnection();
+        }
+        catch (IllegalArgumentException | ClassCastException e) {
+            throw new MalformedURLException("invalid url " + location);
+        }
+        connection.setConnectTimeout(this.connectTimeout);
+        connection.setReadTimeout(this.readTimeout);
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+        int status;
+        try {
+            status = connection.getResponseCode();
+        }
+        catch (UnknownHostException e) {
+            // asking again will not help
+            throw e;
+        }
+        catch (IOException e) {
+            throw new RetryableException(e);
+        }
+        boolean conditional = etag != null || lastModified != null;
+        if (status == HttpURLConnection.HTTP_OK || (status == HttpURLConnection.HTTP_NOT_MODIFIED && conditional)) {
+            return connection;
+        }
+        discard(connection);
+        StatusException failure = new StatusException(status, location);
+        if (status >= 500 || status == 429) {
+            throw new RetryableException(failure);
+        }
+        throw failure;
+    }
+
+    private static InputStream body(HttpURLConnection connection) throws IOException {
+        InputStream body = connection.getInputStream();
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(body) : body;
+    }
+
+    // reads out a response that is not wanted, so that its connection can go back to the keep-alive cache
+    private static void discard(HttpURLConnection connection) {
+        try (InputStream unwanted = (connection.getResponseCode() >= 400) ? connection.getErrorStream()
+                : connection.getInputStream()) {
+            if (unwanted != null) {
+                unwanted.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Waits for a response requested with {@link #openAsync(String, String)}.
+     * @return The response body.
+     * @throws IOException If the endpoint could not be fetched.
+     * */
+    public static InputStream await(CompletableFuture<InputStream> response) throws IOException {
+        try {
+            return response.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while fetching", e);
+        }
+    }
+
+    /**
+     * Reads a whole response requested with {@link #openAsync(String, String)} as a string.
+     * */
+    public static String readString(CompletableFuture<InputStream> response) throws IOException {
+        try (InputStream input = await(response)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
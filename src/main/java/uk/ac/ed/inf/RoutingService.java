@@ -0,0 +1,348 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.RouteCache;
+import uk.ac.ed.inf.pathfinder.RouteStore;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers validation and routing requests over HTTP from one resident process, so that every request is served from
+ * state that is already loaded and warm: the {@link ReferenceData} is fetched once, and the route of every restaurant
+ * is computed before the first request is accepted. Endpoints:
+ * <ul>
+ *     <li>POST /validate with an {@link Order} as JSON: the order's status and validation code, as the
+ *     {@link OrderValidator} decides them.</li>
+ *     <li>POST /route with {"src": {"lng", "lat"}, "dest": {"lng", "lat"}}, src defaulting to {@link Context#DEPOT}:
+ *     the drone's positions from src to dest and back, as {@link ReferenceData#getRoute(LngLat, LngLat)} finds them.
+ *     Positions in a no-fly zone or far outside every zone are a 400, and a 422 means the drone cannot get close to
+ *     dest from src, which is decided up front when dest is in the central area and src is not. Only the routes from
+ *     the depot to the restaurants go through the reference data's {@link RouteStore}; any other route, or the lack of
+ *     one, is only kept in a {@link RouteCache} of the service, which is bounded and never saved. Those routes are
+ *     planned with a budget of {@link #AD_HOC_MAX_EXPANSIONS}, so a request that cannot be routed fails fast.</li>
+ *     <li>GET /stats: the number of requests, errors and the p50/p99 latency of each endpoint.</li>
+ * </ul>
+ * Every request runs on its own virtual thread when the JVM has them (Java 21 and later), and on a pooled platform
+ * thread otherwise.
+ * */
+public class RoutingService {
+    public static final int DEFAULT_PORT = 8080;
+    // latencies are kept for the most recent requests of each endpoint
+    private static final int LATENCY_WINDOW = 8192;
+    // positions further than a whole flight outside the bounding box of the zones are rejected up front
+    private static final double BOUNDS_MARGIN = SystemConstants.DRONE_MAX_MOVES * SystemConstants.DRONE_MOVE_DISTANCE;
+    // lattice planner budget for routes other than the depot to a restaurant, which all need far fewer expansions
+    static final int AD_HOC_MAX_EXPANSIONS = 20_000;
+
+    private final ReferenceData referenceData;
+    private final OrderValidator orderValidator = new OrderValidator();
+    private final ObjectMapper objectMapper = Context.getObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    // routes between any other positions than the depot and a restaurant, empty if there is none
+    private final RouteCache adHocRoutes = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+    // the bounding box of the central area and no-fly zones widened by BOUNDS_MARGIN, empty if there are no vertices
+    private double minLng = Double.POSITIVE_INFINITY;
+    private double maxLng = Double.NEGATIVE_INFINITY;
+    private double minLat = Double.POSITIVE_INFINITY;
+    private double maxLat = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param referenceData The state every request is answered from.
+     * @param port The port to listen on, 0 for any free port.
+     * */
+    public RoutingService(ReferenceData referenceData, int port) throws IOException {
+        this.referenceData = referenceData;
+        List<LngLat> vertices = new ArrayList<>(List.of(referenceData.getCentralArea().vertices()));
+        for (NamedRegion zone: referenceData.getNoFlyZones()) {
+            vertices.addAll(List.of(zone.vertices()));
+        }
+        for (LngLat vertex: vertices) {
+            this.minLng = Math.min(this.minLng, vertex.lng() - BOUNDS_MARGIN);
+            this.maxLng = Math.max(this.maxLng, vertex.lng() + BOUNDS_MARGIN);
+            this.minLat = Math.min(this.minLat, vertex.lat() - BOUNDS_MARGIN);
+            this.maxLat = Math.max(this.maxLat, vertex.lat() + BOUNDS_MARGIN);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        this.server.setExecutor(this.executor);
+        handle("/validate", "POST", this::validate);
+        handle("/route", "POST", this::route);
+        handle("/stats", "GET", exchange -> getStats());
+    }
+
+    /**
+     * @return A virtual thread per task executor if this JVM has virtual threads, otherwise a cached thread pool.
+     * */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // looked up reflectively, the project still targets Java 18
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Routes the depot to every restaurant, so that those routes are cached before the first request, and starts
+     * accepting requests.
+     * */
+    public void start() {
+        long start_time = System.nanoTime();
+        for (Restaurant restaurant: this.referenceData.getRestaurants()) {
+            this.referenceData.getRoute(Context.DEPOT, restaurant.location());
+        }
+        this.referenceData.saveRoutes();
+        long end_time = System.nanoTime();
+        System.out.println("Warming routes took: " + ((end_time - start_time) / 1_000_000_000.0) + "s");
+        this.server.start();
+        System.out.println("Routing service listening on port " + getPort());
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second for the ones in flight.
+     * */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Endpoints
+
+    // thrown by endpoints for requests they cannot answer, becomes a 400 unless another 4xx status is given
+    private static final class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        BadRequestException(String message) {
+            this(400, message);
+        }
+
+        BadRequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Endpoint {
+        Object answer(HttpExchange exchange) throws IOException, BadRequestException;
+    }
+
+    private Object validate(HttpExchange exchange) throws IOException, BadRequestException {
+        Order order;
+        try (InputStream body = exchange.getRequestBody()) {
+            order = this.objectMapper.readValue(body, Order.class);
+        }
+        catch (IOException e) {
+            throw new BadRequestException("body is not an order: " + e.getMessage());
+        }
+        if (order == null) {
+            throw new BadRequestException("body is not an order");
+        }
+        this.orderValidator.validateOrder(order, this.referenceData.getMenuIndex());
+        Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("orderNo", order.getOrderNo());
+        answer.put("orderStatus", order.getOrderStatus());
+        answer.put("orderValidationCode", order.getOrderValidationCode());
+        return answer;
+    }
+
+    private Object route(HttpExchange exchange) throws IOException, BadRequestException {
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = this.objectMapper.readTree(body);
+        }
+        catch (IOException e) {
+            throw new BadRequestException("body is not JSON: " + e.getMessage());
+        }
+        if (request == null || !request.hasNonNull("dest")) {
+            throw new BadRequestException("dest is missing");
+        }
+        LngLat src = request.hasNonNull("src") ? readLngLat(request.get("src")) : Context.DEPOT;
+        LngLat dest = readLngLat(request.get("dest"));
+        if (!isInBounds(src) || !isInBounds(dest)) {
+            throw new BadRequestException("src and dest must be within " + BOUNDS_MARGIN + " degrees of the zones");
+        }
+        ZoneSet zoneSet = this.referenceData.getVisibilityGraph().getZoneSet();
+        if (zoneSet.getZoneGrid().isInAny(src) || zoneSet.getZoneGrid().isInAny(dest)) {
+            throw new BadRequestException("src and dest must not be in a no-fly zone");
+        }
+        if (!zoneSet.isInCentralArea(src) && zoneSet.isInCentralArea(dest)) {
+            throw new BadRequestException(422, "the drone cannot enter the central area from outside");
+        }
+        List<LngLat> route;
+        if (src.equals(Context.DEPOT) && this.referenceData.getRouteTable().indexOf(dest) >= 0) {
+            // the depot to a restaurant, warmed by start() and kept in the route store
+            route = this.referenceData.getRoute(src, dest);
+        }
+        else {
+            // a route that does not get there is cached as an empty one, so asking again is cheap
+            route = this.adHocRoutes.getRoute(src, dest, zoneSet, () -> {
+                List<LngLat> computed = this.referenceData.computeRoute(src, dest, AD_HOC_MAX_EXPANSIONS);
+                return reaches(computed, dest) ? computed : List.of();
+            });
+        }
+        if (!reaches(route, dest)) {
+            throw new BadRequestException(422, "the drone cannot get close to dest from src");
+        }
+        Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("moves", route.size() - 1);
+        answer.put("path", route.toArray(new LngLat[0]));
+        return answer;
+    }
+
+    private boolean isInBounds(LngLat position) {
+        return position.lng() >= this.minLng && position.lng() <= this.maxLng
+                && position.lat() >= this.minLat && position.lat() <= this.maxLat;
+    }
+
+    // a route is the flight out, a hover and the flight back, so the flight out ends half way
+    private static boolean reaches(List<LngLat> route, LngLat dest) {
+        return !route.isEmpty() && new LngLatHandler().isCloseTo(route.get((route.size() - 1) / 2), dest);
+    }
+
+    private static LngLat readLngLat(JsonNode node) throws BadRequestException {
+        if (!node.path("lng").isNumber() || !node.path("lat").isNumber()) {
+            throw new BadRequestException("expected {\"lng\": number, \"lat\": number}, got: " + node);
+        }
+        return new LngLat(node.get("lng").doubleValue(), node.get("lat").doubleValue());
+    }
+
+    private Object getStats() {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        this.stats.forEach((path, endpointStats) -> answer.put(path, endpointStats.toMap()));
+        answer.put("routeCache", this.referenceData.getRouteCache().toString());
+        answer.put("adHocRouteCache", this.adHocRoutes.toString());
+        return answer;
+    }
+
+    // wraps an endpoint with method checking, error handling, JSON encoding and timing
+    private void handle(String path, String method, Endpoint endpoint) {
+        EndpointStats endpointStats = new EndpointStats();
+        this.stats.put(path, endpointStats);
+        HttpHandler handler = exchange -> {
+            long start_time = System.nanoTime();
+            int status = 200;
+            Object answer;
+            try {
+                if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                    status = 405;
+                    answer = Map.of("error", "use " + method);
+                }
+                else {
+                    answer = endpoint.answer(exchange);
+                }
+            }
+            catch (BadRequestException e) {
+                status = e.status;
+                answer = Map.of("error", e.getMessage());
+            }
+            catch (RuntimeException e) {
+                System.err.println("Error: " + path + " failed: " + e);
+                status = 500;
+                answer = Map.of("error", String.valueOf(e.getMessage()));
+            }
+            try {
+                byte[] body = this.objectMapper.writeValueAsBytes(answer);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            finally {
+                exchange.close();
+                endpointStats.record(System.nanoTime() - start_time, status != 200);
+            }
+        };
+        this.server.createContext(path, handler);
+    }
+
+    /**
+     * Request counts and the latencies of the most recent requests of one endpoint.
+     * */
+    static final class EndpointStats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        // ring buffer of latencies in nanoseconds
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private long recorded = 0;
+
+        void record(long nanos, boolean error) {
+            this.requests.incrementAndGet();
+            if (error) {
+                this.errors.incrementAndGet();
+            }
+            synchronized (this.latencies) {
+                this.latencies[(int) (this.recorded++ % LATENCY_WINDOW)] = nanos;
+            }
+        }
+
+        /**
+         * @param percentile Between 0 and 100.
+         * @return The latency in milliseconds below which that percentage of the recent requests were answered, or 0
+         * if there were none.
+         * */
+        double percentile(double percentile) {
+            long[] window;
+            synchronized (this.latencies) {
+                window = Arrays.copyOf(this.latencies, (int) Math.min(this.recorded, LATENCY_WINDOW));
+            }
+            if (window.length == 0) {
+                return 0.0;
+            }
+            Arrays.sort(window);
+            int rank = (int) Math.ceil(percentile / 100.0 * window.length) - 1;
+            return window[Math.max(0, rank)] / 1_000_000.0;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", this.requests.get());
+            map.put("errors", this.errors.get());
+            map.put("p50Millis", percentile(50));
+            map.put("p99Millis", percentile(99));
+            return map;
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,310 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.Arrays;
+
+/**
+ * A* over a {@link CsrGraph} with a query's src and dest spliced in, on primitive scratch arrays and an indexed
+ * binary heap with decrease-key. The scratch arrays belong to the calling thread and are reused by its next search;
+ * a generation stamp marks which entries belong to the current search, so they never have to be cleared. A search
+ * allocates nothing but its result.
+ * Ids below {@link CsrGraph#size()} are static nodes. A src or dest that is not a static node gets the id size() or
+ * size() + 1.
+ * */
+final class AStarSearch {
+    private static final ThreadLocal<AStarSearch> SCRATCH = ThreadLocal.withInitial(AStarSearch::new);
+
+    // per node, valid when stamp[node] == generation
+    private int[] stamp = new int[0];
+    private double[] local = new double[0];
+    private double[] global = new double[0];
+    private int[] parent = new int[0];
+    private boolean[] closed = new boolean[0];
+    // position of each node in the heap, or -1 once it has left it
+    private int[] heapIndex = new int[0];
+    // static nodes that can see src or dest, valid when srcStamp[node] or destStamp[node] == generation
+    private int[] srcStamp = new int[0];
+    private int[] destStamp = new int[0];
+    private int[] heap = new int[0];
+    private int heapSize;
+    private int generation;
+
+    private AStarSearch() {}
+
+    /**
+     * @param graph The static graph.
+     * @param src The start of the search.
+     * @param dest The end of the search.
+     * @param srcVisible The static nodes visible from src.
+     * @param destVisible The static nodes visible from dest.
+     * @param direct True if src and dest can see each other.
+     * @return The ids of the nodes on a shortest path from src to dest, both included, or null if dest is unreachable.
+     * */
+    static int[] search(CsrGraph graph, LngLat src, LngLat dest, int[] srcVisible, int[] destVisible, boolean direct) {
+        return SCRATCH.get().run(graph, src, dest, srcVisible, destVisible, direct);
+    }
+
+    /**
+     * Dijkstra from src to every static node: the same search with no dest, so no heuristic and no early exit.
+     * @param srcVisible The static nodes visible from src.
+     * @param distances Filled with the length of the shortest path from src to every static node, or
+     *                  {@link Double#POSITIVE_INFINITY} for unreachable nodes.
+     * @param parents Filled with the previous node on each of those paths, -1 for src itself and unreachable nodes.
+     * */
+    static void shortestPathTree(CsrGraph graph, LngLat src, int[] srcVisible, double[] distances, int[] parents) {
+        SCRATCH.get().tree(graph, src, srcVisible, distances, parents);
+    }
+
+    /**
+     * @return The id src or dest gets in a search on this graph.
+     * */
+    static int endpointId(CsrGraph graph, LngLat endpoint, boolean isDest) {
+        int id = graph.idOf(endpoint);
+        if (id >= 0) {
+            return id;
+        }
+        return isDest ? graph.size() + 1 : graph.size();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (this.stamp.length >= capacity) {
+            return;
+        }
+        this.stamp = new int[capacity];
+        this.local = new double[capacity];
+        this.global = new double[capacity];
+        this.parent = new int[capacity];
+        this.closed = new boolean[capacity];
+        this.heapIndex = new int[capacity];
+        this.srcStamp = new int[capacity];
+        this.destStamp = new int[capacity];
+        this.heap = new int[capacity];
+        this.generation = 0;
+    }
+
+    private void nextGeneration(int n) {
+        ensureCapacity(n + 2);
+        if (++this.generation == Integer.MAX_VALUE) {
+            // stamps could now match a stale generation, start over
+            Arrays.fill(this.stamp, 0);
+            Arrays.fill(this.srcStamp, 0);
+            Arrays.fill(this.destStamp, 0);
+            this.generation = 1;
+        }
+    }
+
+    private void tree(CsrGraph graph, LngLat src, int[] srcVisible, double[] distances, int[] parents) {
+        int n = graph.size();
+        nextGeneration(n);
+        int srcId = endpointId(graph, src, false);
+        this.heapSize = 0;
+        visit(srcId);
+        this.local[srcId] = 0.0;
+        this.global[srcId] = 0.0;
+        this.parent[srcId] = -1;
+        push(srcId);
+        while (this.heapSize > 0) {
+            int current = pop();
+            this.closed[current] = true;
+            if (current < n) {
+                for (int e = graph.offsets[current]; e < graph.offsets[current + 1]; e++) {
+                    relax(graph, current, graph.targets[e], graph.weights[e], src, null, srcId, -1);
+                }
+            }
+            if (current == srcId) {
+                for (int node: srcVisible) {
+                    relax(graph, current, node, lng(graph, current, src, null, srcId, -1),
+                            lat(graph, current, src, null, srcId, -1), src, null, srcId, -1);
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            boolean reached = this.stamp[i] == this.generation;
+            distances[i] = reached ? this.local[i] : Double.POSITIVE_INFINITY;
+            parents[i] = reached ? this.parent[i] : -1;
+        }
+    }
+
+    private int[] run(CsrGraph graph, LngLat src, LngLat dest, int[] srcVisible, int[] destVisible, boolean direct) {
+        int n = graph.size();
+        nextGeneration(n);
+        int srcId = endpointId(graph, src, false);
+        // a search from a position to itself ends where it starts
+        int destId = dest.equals(src) ? srcId : endpointId(graph, dest, true);
+        for (int node: srcVisible) {
+            this.srcStamp[node] = this.generation;
+        }
+        for (int node: destVisible) {
+            this.destStamp[node] = this.generation;
+        }
+        double destLng = dest.lng();
+        double destLat = dest.lat();
+
+        this.heapSize = 0;
+        visit(srcId);
+        this.local[srcId] = 0.0;
+        this.global[srcId] = CsrGraph.distance(src.lng(), src.lat(), destLng, destLat);
+        this.parent[srcId] = -1;
+        push(srcId);
+
+        while (this.heapSize > 0) {
+            int current = pop();
+            if (current == destId) {
+                return path(destId);
+            }
+            this.closed[current] = true;
+            double currentLng = lng(graph, current, src, dest, srcId, destId);
+            double currentLat = lat(graph, current, src, dest, srcId, destId);
+            if (current < n) {
+                for (int e = graph.offsets[current]; e < graph.offsets[current + 1]; e++) {
+                    relax(graph, current, graph.targets[e], graph.weights[e], src, dest, srcId, destId);
+                }
+            }
+            // the spliced edges of src and dest
+            if (current == srcId) {
+                for (int node: srcVisible) {
+                    relax(graph, current, node, currentLng, currentLat, src, dest, srcId, destId);
+                }
+                if (direct) {
+                    relax(graph, current, destId, currentLng, currentLat, src, dest, srcId, destId);
+                }
+            }
+            if (current == destId) {
+                for (int node: destVisible) {
+                    relax(graph, current, node, currentLng, currentLat, src, dest, srcId, destId);
+                }
+            }
+            if (current < n && this.srcStamp[current] == this.generation) {
+                relax(graph, current, srcId, currentLng, currentLat, src, dest, srcId, destId);
+            }
+            if (current < n && this.destStamp[current] == this.generation) {
+                relax(graph, current, destId, currentLng, currentLat, src, dest, srcId, destId);
+            }
+        }
+        return null;
+    }
+
+    private static double lng(CsrGraph graph, int node, LngLat src, LngLat dest, int srcId, int destId) {
+        if (node < graph.size()) {
+            return graph.lng[node];
+        }
+        return (node == srcId) ? src.lng() : dest.lng();
+    }
+
+    private static double lat(CsrGraph graph, int node, LngLat src, LngLat dest, int srcId, int destId) {
+        if (node < graph.size()) {
+            return graph.lat[node];
+        }
+        return (node == srcId) ? src.lat() : dest.lat();
+    }
+
+    // relaxes a spliced edge, whose length is not stored in the graph
+    private void relax(CsrGraph graph, int from, int to, double fromLng, double fromLat, LngLat src, LngLat dest,
+                       int srcId, int destId) {
+        double weight = CsrGraph.distance(fromLng, fromLat, lng(graph, to, src, dest, srcId, destId),
+                lat(graph, to, src, dest, srcId, destId));
+        relax(graph, from, to, weight, src, dest, srcId, destId);
+    }
+
+    private void relax(CsrGraph graph, int from, int to, double weight, LngLat src, LngLat dest, int srcId, int destId) {
+        boolean seen = this.stamp[to] == this.generation;
+        if (seen && this.closed[to]) {
+            return;
+        }
+        double lower = this.local[from] + weight;
+        if (seen && lower >= this.local[to]) {
+            return;
+        }
+        if (!seen) {
+            visit(to);
+        }
+        this.local[to] = lower;
+        // without a dest this is Dijkstra
+        this.global[to] = (dest == null) ? lower : lower + CsrGraph.distance(lng(graph, to, src, dest, srcId, destId),
+                lat(graph, to, src, dest, srcId, destId), dest.lng(), dest.lat());
+        this.parent[to] = from;
+        if (seen) {
+            siftUp(this.heapIndex[to]);
+        }
+        else {
+            push(to);
+        }
+    }
+
+    private void visit(int node) {
+        this.stamp[node] = this.generation;
+        this.closed[node] = false;
+        this.heapIndex[node] = -1;
+    }
+
+    private int[] path(int destId) {
+        int length = 0;
+        for (int node = destId; node != -1; node = this.parent[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = destId; node != -1; node = this.parent[node]) {
+            path[--length] = node;
+        }
+        return path;
+    }
+
+    //------------------------------------------------------------------
+    // Indexed binary min-heap on global, heapIndex tracks where each node sits so its key can be decreased
+    private void push(int node) {
+        this.heap[this.heapSize] = node;
+        this.heapIndex[node] = this.heapSize;
+        siftUp(this.heapSize++);
+    }
+
+    private int pop() {
+        int top = this.heap[0];
+        this.heapIndex[top] = -1;
+        int last = this.heap[--this.heapSize];
+        if (this.heapSize > 0) {
+            this.heap[0] = last;
+            this.heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int node = this.heap[i];
+        double key = this.global[node];
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (this.global[this.heap[up]] <= key) {
+                break;
+            }
+            this.heap[i] = this.heap[up];
+            this.heapIndex[this.heap[i]] = i;
+            i = up;
+        }
+        this.heap[i] = node;
+        this.heapIndex[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = this.heap[i];
+        double key = this.global[node];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.heapSize) {
+                break;
+            }
+            if (child + 1 < this.heapSize && this.global[this.heap[child + 1]] < this.global[this.heap[child]]) {
+                child++;
+            }
+            if (this.global[this.heap[child]] >= key) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            this.heapIndex[this.heap[i]] = i;
+            i = child;
+        }
+        this.heap[i] = node;
+        this.heapIndex[node] = i;
+    }
+}
@@ -0,0 +1,205 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A complete drone route held as its start position and one byte per move, instead of one {@link LngLat} per
+ * position. A byte is a {@link CompassMoves} direction, or {@link #HOVER} for a move that stays put.
+ * <p>
+ * Routes built by {@link DronePathFinder#getRoute()} fly out to the destination, fly the same positions back in
+ * reverse and end with a hover, so only the flight out is stored and the way back is read from it. Positions are
+ * replayed from the start with the {@link CompassMoves} table, which is how the planners computed them, so they come
+ * out bit for bit the same as the route that was encoded. Nothing is replayed until the route is read, normally when
+ * it is serialized, and a route costs about one byte per move instead of about fifty.
+ * </p>
+ * The route is an unmodifiable {@link List}, so it can be used wherever a route list is expected. {@link #get(int)}
+ * replays from the start, so read it with {@link #iterator()} or {@link #toArray()}.
+ * */
+public final class CompactRoute extends AbstractList<LngLat> {
+    public static final byte HOVER = CompassMoves.DIRECTIONS;
+
+    private final double startLng;
+    private final double startLat;
+    // the moves of the flight out
+    private final byte[] moves;
+    // true if the flight out is followed by its reverse and a final hover
+    private final boolean returns;
+
+    private CompactRoute(double startLng, double startLat, byte[] moves, boolean returns) {
+        this.startLng = startLng;
+        this.startLat = startLat;
+        this.moves = moves;
+        this.returns = returns;
+    }
+
+    /**
+     * @param route A route whose consecutive positions are all compass moves or hovers, as the planners build them.
+     * @return The route encoded, or null if some step of it is not a compass move or a hover.
+     * */
+    public static CompactRoute encode(List<LngLat> route) {
+        if (route.isEmpty()) {
+            return null;
+        }
+        LngLat[] positions = route.toArray(new LngLat[0]);
+        // flight out L[0..n], back L[n..1], then a hover on L[1], which is 2n + 2 positions
+        int out = positions.length - 1;
+        boolean returns = positions.length % 2 == 0 && isReturn(positions, positions.length / 2 - 1);
+        if (returns) {
+            out = positions.length / 2 - 1;
+        }
+        byte[] moves = new byte[out];
+        for (int i = 0; i < out; i++) {
+            int move = moveBetween(positions[i], positions[i + 1]);
+            if (move < 0) {
+                return null;
+            }
+            moves[i] = (byte) move;
+        }
+        return new CompactRoute(positions[0].lng(), positions[0].lat(), moves, returns);
+    }
+
+    private static boolean isReturn(LngLat[] positions, int n) {
+        for (int i = n + 1; i < positions.length; i++) {
+            if (!positions[i].equals(positions[mirror(n, i)])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the position of the flight out that the i'th position of a returning route repeats
+    private static int mirror(int n, int i) {
+        if (i <= n) {
+            return i;
+        }
+        // the final hover is on L[1], or on L[0] if the drone never moved
+        return (i == 2 * n + 1) ? Math.min(1, n) : 2 * n + 1 - i;
+    }
+
+    // the move from p to q, or -1 if it is neither a hover nor exactly one compass move
+    private static int moveBetween(LngLat p, LngLat q) {
+        if (p.lng() == q.lng() && p.lat() == q.lat()) {
+            return HOVER;
+        }
+        for (int direction = 0; direction < CompassMoves.DIRECTIONS; direction++) {
+            if (p.lng() + CompassMoves.dLng(direction) == q.lng() && p.lat() + CompassMoves.dLat(direction) == q.lat()) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    // the positions of the flight out, replayed from the start
+    private LngLat[] flightOut() {
+        LngLat[] positions = new LngLat[this.moves.length + 1];
+        double lng = this.startLng;
+        double lat = this.startLat;
+        positions[0] = new LngLat(lng, lat);
+        for (int i = 0; i < this.moves.length; i++) {
+            if (this.moves[i] != HOVER) {
+                lng += CompassMoves.dLng(this.moves[i]);
+                lat += CompassMoves.dLat(this.moves[i]);
+                positions[i + 1] = new LngLat(lng, lat);
+            }
+            else {
+                positions[i + 1] = positions[i];
+            }
+        }
+        return positions;
+    }
+
+    @Override
+    public LngLat[] toArray() {
+        LngLat[] out = flightOut();
+        if (!this.returns) {
+            return out;
+        }
+        int n = this.moves.length;
+        LngLat[] positions = new LngLat[2 * n + 2];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = out[mirror(n, i)];
+        }
+        return positions;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        LngLat[] positions = toArray();
+        if (a.length < positions.length) {
+            a = (T[]) Array.newInstance(a.getClass().getComponentType(), positions.length);
+        }
+        System.arraycopy(positions, 0, a, 0, positions.length);
+        if (a.length > positions.length) {
+            a[positions.length] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public Iterator<LngLat> iterator() {
+        return List.of(toArray()).iterator();
+    }
+
+    @Override
+    public LngLat get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        int i = this.returns ? mirror(this.moves.length, index) : index;
+        double lng = this.startLng;
+        double lat = this.startLat;
+        for (int m = 0; m < i; m++) {
+            if (this.moves[m] != HOVER) {
+                lng += CompassMoves.dLng(this.moves[m]);
+                lat += CompassMoves.dLat(this.moves[m]);
+            }
+        }
+        return new LngLat(lng, lat);
+    }
+
+    @Override
+    public int size() {
+        return this.returns ? 2 * this.moves.length + 2 : this.moves.length + 1;
+    }
+
+    //------------------------------------------------------------------
+    // Binary form, as kept by a RouteStore: start lng/lat, returns flag, move count, moves
+    public int getEncodedBytes() {
+        return 2 * Double.BYTES + 1 + Integer.BYTES + this.moves.length;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putDouble(this.startLng).putDouble(this.startLat);
+        out.put((byte) (this.returns ? 1 : 0));
+        out.putInt(this.moves.length);
+        out.put(this.moves);
+    }
+
+    /**
+     * Reads a route written by {@link #writeTo(ByteBuffer)} starting at the given offset, without moving the buffer.
+     * */
+    static CompactRoute readFrom(ByteBuffer in, int offset) {
+        double lng = in.getDouble(offset);
+        double lat = in.getDouble(offset + 8);
+        boolean returns = in.get(offset + 16) != 0;
+        int count = in.getInt(offset + 17);
+        if (count < 0 || offset + 21L + count > in.limit()) {
+            throw new IllegalStateException("route store is truncated");
+        }
+        byte[] moves = new byte[count];
+        in.get(offset + 21, moves);
+        for (byte move: moves) {
+            if (move < 0 || move > HOVER) {
+                throw new IllegalStateException("route store has an unknown move " + move);
+            }
+        }
+        return new CompactRoute(lng, lat, moves, returns);
+    }
+}
@@ -0,0 +1,74 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * The 16 compass moves the drone can make, as a table of (lng, lat) offsets worked out once. Direction d is the move
+ * at angle d * 22.5 degrees, with 0 meaning east and angles going anticlockwise, as in
+ * {@link LngLatHandler#nextPosition(LngLat, double)}.
+ * The offsets are computed with exactly the expression nextPosition always used, so moving by the table gives the
+ * same position, bit for bit, as moving by the angle, only without the trigonometry.
+ * */
+public final class CompassMoves {
+    public static final int DIRECTIONS = 16;
+    public static final double SECTOR = 360.0 / DIRECTIONS;
+    // the angle the drone hovers with, see LngLatHandler.nextPosition
+    public static final double HOVER_ANGLE = 999.0;
+
+    private static final double[] D_LNG = new double[DIRECTIONS];
+    private static final double[] D_LAT = new double[DIRECTIONS];
+
+    static {
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            double angle = direction * SECTOR;
+            D_LNG[direction] = SystemConstants.DRONE_MOVE_DISTANCE * Math.cos(Math.toRadians(angle));
+            D_LAT[direction] = SystemConstants.DRONE_MOVE_DISTANCE * Math.sin(Math.toRadians(angle));
+        }
+    }
+
+    private CompassMoves() {}
+
+    /**
+     * @return The direction of a compass angle, or -1 if the angle is not one of the 16 in [0, 360).
+     * */
+    public static int direction(double angle) {
+        double index = angle / SECTOR;
+        int direction = (int) index;
+        return (direction == index && direction >= 0 && direction < DIRECTIONS) ? direction : -1;
+    }
+
+    public static double angle(int direction) {
+        return direction * SECTOR;
+    }
+
+    /**
+     * @return The direction that undoes a move in the given direction.
+     * */
+    public static int opposite(int direction) {
+        return (direction + DIRECTIONS / 2) % DIRECTIONS;
+    }
+
+    public static double dLng(int direction) {
+        return D_LNG[direction];
+    }
+
+    public static double dLat(int direction) {
+        return D_LAT[direction];
+    }
+
+    /**
+     * @return The position one move from the start in the given direction.
+     * */
+    public static LngLat move(LngLat start, int direction) {
+        return new LngLat(start.lng() + D_LNG[direction], start.lat() + D_LAT[direction]);
+    }
+
+    /**
+     * Moves a position held as {lng, lat} in place, for loops that should not allocate per step.
+     * */
+    public static void move(double[] position, int direction) {
+        position[0] += D_LNG[direction];
+        position[1] += D_LAT[direction];
+    }
+}
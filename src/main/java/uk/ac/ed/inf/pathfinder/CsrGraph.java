@@ -0,0 +1,75 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The static part of a {@link VisibilityGraph} in compressed sparse row form, for {@link AStarSearch}. Every distinct
+ * node gets an int id, in the order the nodes first appear. The neighbours of node i are
+ * targets[offsets[i]] to targets[offsets[i + 1] - 1], and weights holds the length of each of those edges.
+ * */
+final class CsrGraph {
+    final LngLat[] nodes;
+    final double[] lng;
+    final double[] lat;
+    final int[] offsets;
+    final int[] targets;
+    final double[] weights;
+    private final HashMap<LngLat, Integer> ids;
+
+    private CsrGraph(List<LngLat> nodes, Map<LngLat, ArrayList<LngLat>> edgeSet) {
+        this.ids = new HashMap<>();
+        ArrayList<LngLat> distinct = new ArrayList<>();
+        for (LngLat node: nodes) {
+            if (this.ids.putIfAbsent(node, distinct.size()) == null) {
+                distinct.add(node);
+            }
+        }
+        int n = distinct.size();
+        this.nodes = distinct.toArray(new LngLat[0]);
+        this.lng = new double[n];
+        this.lat = new double[n];
+        this.offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            this.lng[i] = this.nodes[i].lng();
+            this.lat[i] = this.nodes[i].lat();
+            this.offsets[i + 1] = this.offsets[i] + edgeSet.get(this.nodes[i]).size();
+        }
+        this.targets = new int[this.offsets[n]];
+        this.weights = new double[this.offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int e = this.offsets[i];
+            for (LngLat neighbour: edgeSet.get(this.nodes[i])) {
+                int j = this.ids.get(neighbour);
+                this.targets[e] = j;
+                this.weights[e] = distance(this.lng[i], this.lat[i], this.lng[j], this.lat[j]);
+                e++;
+            }
+        }
+    }
+
+    static CsrGraph of(List<LngLat> nodes, Map<LngLat, ArrayList<LngLat>> edgeSet) {
+        return new CsrGraph(nodes, edgeSet);
+    }
+
+    int size() {
+        return this.nodes.length;
+    }
+
+    /**
+     * @return The id of the node at this position, or -1 if it is not a node.
+     * */
+    int idOf(LngLat position) {
+        Integer id = this.ids.get(position);
+        return (id == null) ? -1 : id;
+    }
+
+    // euclidean distance, computed as LngLatHandler.distanceTo computes it
+    static double distance(double lngA, double latA, double lngB, double latB) {
+        return Math.sqrt(Math.pow(latA - latB, 2) + Math.pow(lngA - lngB, 2));
+    }
+}
@@ -10,115 +10,138 @@ import java.util.*;
  * This class is responsible for handling all DronePathFinding calculations.
  * Drone path processing can be explained in 3 steps.
  * <p>
- * Firstly, construct a {@link VisibilityGraph} by calling the default constructor.
+ * Firstly, take the shared {@link VisibilityGraph} for the current obstacles and splice in
+ * {@link #src} and {@link #dest}.
  * </p>
  * <p>
- * Secondly, run A* on the {@link VisibilityGraph} to find the shortest path from {@link Context#getSrc() src} to {@link Context#getDest() dest}.
+ * Secondly, run A* on the {@link VisibilityGraph} to find the shortest path from {@link #src} to {@link #dest}.
  * </p>
  * <p>
- * Thirdly, build a path using the constrained direction set with a greedy algorithm.
+ * Thirdly, build a path using the constrained direction set, with the fewest moves found by the
+ * {@link LatticePlanner}, or with a greedy algorithm when {@value #PLANNER_PROPERTY} is "greedy".
  * </p>
  * This path can be returned with {@link #getRoute()}
  */
 
 public class DronePathFinder {
+    public static final String PLANNER_PROPERTY = "pizzadronz.planner";
+    public static final String LATTICE_PLANNER = "lattice";
+    public static final String GREEDY_PLANNER = "greedy";
+    // the greedy planner gives up on a leg after this many moves, far more than any leg needs
+    private static final int MAX_GREEDY_MOVES = 2000;
+
     private final VisibilityGraph visibilityGraph;
-    private Context context;
+    // ids of the static nodes visible from src and dest, and whether src and dest see each other, set by pathfind()
+    private int[] srcVisible;
+    private int[] destVisible;
+    private boolean direct;
+    private final LngLat src;
+    private final LngLat dest;
+    private final boolean greedy;
+    private final int maxExpansions;
+
+    /** The drone path finder only reads the shared visibility graph, and keeps src and dest to itself, so several path
+     * finders can run on different threads at the same time.
+     * (stage 1: 3 for finding path) reuse the static visibility graph, the query's endpoints are spliced in by
+     * {@link #pathfind()}.
+     * @param visibilityGraph The static graph for the current obstacles, see {@link VisibilityGraph#of(ZoneSet)}.
+     * @param src Where the drone starts, usually {@link Context#getSrc()}.
+     * @param dest Where the drone flies to, usually a restaurant location.
+     * */
+    public DronePathFinder(VisibilityGraph visibilityGraph, LngLat src, LngLat dest) {
+        this(visibilityGraph, src, dest, LatticePlanner.DEFAULT_MAX_EXPANSIONS);
+    }
 
-    /** By passing in a context, the drone path retrieves the information it needs (such as {@link Context#getSrc() src}) with
-     * Context getter functions.
-     * (stage 1: 3 for finding path) construct a visibility graph by initialising it.
+    /**
+     * Same as {@link #DronePathFinder(VisibilityGraph, LngLat, LngLat)}, but the {@link LatticePlanner} gives up after
+     * the given number of expansions instead of {@link LatticePlanner#DEFAULT_MAX_EXPANSIONS}.
+     * @param maxExpansions The most positions the lattice planner expands before falling back to the greedy planner.
      * */
-    public DronePathFinder(Context context) {
-        this.visibilityGraph = new VisibilityGraph(context);
-        this.context = context;
+    public DronePathFinder(VisibilityGraph visibilityGraph, LngLat src, LngLat dest, int maxExpansions) {
+        this.visibilityGraph = visibilityGraph;
+        this.src = src;
+        this.dest = dest;
+        this.greedy = GREEDY_PLANNER.equals(planner());
+        this.maxExpansions = maxExpansions;
     }
 
-    /** (stage 2: 3 for pathfinding construction)
-     *  This function finds the shortest path between {@link Context#getSrc() src} and
-     *  {@link Context#getDest() dest} in a visibility graph {@link VisibilityGraph}.
-     *  It uses A* pathfinding, see this <a href="https://en.wikipedia.org/wiki/A*_search_algorithm"> wiki article</a>
-     * @return LngLat[] an array of {@link LngLat} values that represent "waypoints". Waypoints can be seen as temporary
-     * destinations that the drone follows to eventually reach {@link Context#getDest() dest}. Ready to be transformed into a
-     * complete array with {@link #buildPath(LngLat, LngLat)}
+    /**
+     * @return The planner {@link #getRoute(LngLat[])} uses, {@value #LATTICE_PLANNER} unless the
+     * {@value #PLANNER_PROPERTY} system property is {@value #GREEDY_PLANNER}.
      * */
-    private LngLat[] pathfind() {
-        // initialise data structures for A*
-        HashMap<LngLat, Double> local = new HashMap<>();
-        HashMap<LngLat, Double> global = new HashMap<>();
-        // (smallest global cost is at the front of the priority queue)
-        PriorityQueue<LngLat> open = new PriorityQueue<>
-                (Comparator.comparingDouble(o -> global.getOrDefault(o, Double.MAX_VALUE)));
-        HashMap<LngLat, LngLat> parent = new HashMap<>();
-        HashSet<LngLat> closed = new HashSet<>();
-
-        // add the source node to the corresponding data structures
-        open.add(this.context.getSrc());
-        local.put(this.context.getSrc(), 0.0);
-        global.put(this.context.getSrc(), heuristic(this.context.getSrc(), this.context.getDest()));
-        parent.put(this.context.getSrc(), null);
-
-        // a* pathfinding algorithm
-        while (!open.isEmpty() && !open.peek().equals(this.context.getDest())) {
-            LngLat current_node = open.poll();
-            closed.add(current_node);
-            for (LngLat neighbour : visibilityGraph.edgeSet.get(current_node)) {
-                if (!closed.contains(neighbour)) {
-                    open.add(neighbour);
-                }
-                double lower = local.getOrDefault(current_node, Double.MAX_VALUE) + heuristic(current_node, neighbour);
-                if (lower < local.getOrDefault(neighbour, Double.MAX_VALUE)) {
-                    parent.put(neighbour, current_node);
-                    local.put(neighbour, lower);
-                    global.put(neighbour, local.get(neighbour) + heuristic(neighbour, this.context.getDest()));
-                }
-            }
+    public static String planner() {
+        String planner = System.getProperty(PLANNER_PROPERTY, LATTICE_PLANNER);
+        if (!planner.equals(LATTICE_PLANNER) && !planner.equals(GREEDY_PLANNER)) {
+            System.err.println("Warning: unknown " + PLANNER_PROPERTY + " " + planner + ", using " + LATTICE_PLANNER);
+            return LATTICE_PLANNER;
         }
-        return constructWaypoints(parent);
+        return planner;
     }
 
-    // heuristic function for A* is euclidean distance
-    private static double heuristic(LngLat a, LngLat b) {
-        LngLatHandler lngLatHandler = new LngLatHandler();
-        return lngLatHandler.distanceTo(a, b);
+    /** (stage 2: 3 for pathfinding construction)
+     *  This function finds the shortest path between {@link #src} and
+     *  {@link #dest} in a visibility graph {@link VisibilityGraph}.
+     *  It uses A* pathfinding, see this <a href="https://en.wikipedia.org/wiki/A*_search_algorithm"> wiki article</a>
+     * @return LngLat[] an array of {@link LngLat} values that represent "waypoints". Waypoints can be seen as temporary
+     * destinations that the drone follows to eventually reach {@link #dest}. Ready to be transformed into a
+     * complete array with {@link #getRoute(LngLat[])}
+     * */
+    public LngLat[] pathfind() {
+        CsrGraph graph = this.visibilityGraph.getCsrGraph();
+        this.srcVisible = this.visibilityGraph.visibleFrom(this.src);
+        this.destVisible = this.src.equals(this.dest) ? this.srcVisible : this.visibilityGraph.visibleFrom(this.dest);
+        this.direct = !this.src.equals(this.dest) && this.visibilityGraph.isVisible(this.src, this.dest);
+        // A* on int node ids, with primitive scratch arrays reused between queries on this thread
+        int[] path = AStarSearch.search(graph, this.src, this.dest, this.srcVisible, this.destVisible, this.direct);
+        return constructWaypoints(graph, path);
     }
 
     /**
-     * This function works by setting the current node to {@link Context#getDest() dest}, then continously setting
-     * current node to current node's parent until current node's parent is the {@link Context#getSrc() src} which
-     * results in getting the shortest path.
+     * This function turns the node ids of the shortest path found by {@link #pathfind()} back into positions.
      *
-     * @param parent Constructed with {@link #pathfind()}. Calling parent.get(current_node) returns the parent of
-     *               current_node.
+     * @param path The node ids from {@link #src} to {@link #dest}, or null if {@link #dest} cannot be reached.
      * @return A list of waypoints. Used to finalise the {@link #pathfind()} function.
      * */
-    private LngLat[] constructWaypoints(HashMap<LngLat, LngLat> parent) {
-        ArrayList<LngLat> waypoints = new ArrayList<>();
-        LngLat current = this.context.getDest();
-        if (parent.containsKey(current)) {
-            while (!current.equals(this.context.getSrc())) {
-                waypoints.add(0, current);
-                current = parent.get(current);
-            }
-            waypoints.add(0, this.context.getSrc());
-        }
-        else {
+    private LngLat[] constructWaypoints(CsrGraph graph, int[] path) {
+        if (path == null) {
             System.err.println("Error: Cannot find dest. Drone path is empty.");
+            return new LngLat[0];
+        }
+        LngLat[] waypoints = new LngLat[path.length];
+        for (int i = 0; i < path.length; i++) {
+            if (path[i] < graph.size()) {
+                waypoints[i] = graph.nodes[path[i]];
+            }
+            else {
+                // src and dest get the ids after the static nodes, see AStarSearch
+                waypoints[i] = (path[i] == graph.size()) ? this.src : this.dest;
+            }
         }
-        return waypoints.toArray(new LngLat[0]);
+        return waypoints;
     }
 
     /**
      * (stage 3: 3 for pathfinding construction) get the list of waypoints by calling the {@link #pathfind()} function.
-     * Starting from {@link Context#getSrc() src}, store the incremental steps that the drone needs to take in order to be close
+     * Starting from {@link #src}, store the incremental steps that the drone needs to take in order to be close
      * to (defined from {@link LngLatHandler#isCloseTo(LngLat, LngLat)}) the next waypoint. Eventually, the last
      * waypoint that the drone has to incrementally step towards is the destination itself, representing the complete
-     * drone path from {@link Context#getSrc() src} to {@link Context#getDest() dest}. The drone path is then reversed and appended onto itself, to
-     * present the drone pathing back to {@link Context#getSrc() src}.
-     * @return The complete list of incremental drone moves to go from {@link Context#getSrc() src} to {@link Context#getDest() dest}.
+     * drone path from {@link #src} to {@link #dest}. The drone path is then reversed and appended onto itself, to
+     * present the drone pathing back to {@link #src}.
+     * Unless the greedy planner was chosen, the whole flight from {@link #src} to {@link #dest} is planned at once by
+     * the {@link LatticePlanner}, which does not have to pass close to the waypoints in between, and the waypoints are
+     * only followed if it gives up.
+     * @return The complete list of incremental drone moves to go from {@link #src} to {@link #dest}.
      * */
     public ArrayList<LngLat> getRoute() {
-        LngLat[] waypoints = pathfind();
+        return getRoute(pathfind());
+    }
+
+    /**
+     * Same as {@link #getRoute()}, but follows waypoints that are already known, such as those of a {@link RouteTable},
+     * instead of searching for them.
+     * @param waypoints The waypoints from {@link #src} to {@link #dest}, as {@link #pathfind()} returns them.
+     * */
+    public ArrayList<LngLat> getRoute(LngLat[] waypoints) {
 
         // sum the distance of the waypoints
         /*
@@ -132,8 +155,21 @@ public class DronePathFinder {
 
         ArrayList<LngLat> dronePath = new ArrayList<>();
         dronePath.add(waypoints[0]);
-        for (int i = 1; i < waypoints.length; i++) {
-            dronePath.addAll(List.of(buildPath(dronePath.get(dronePath.size() - 1), waypoints[i])));
+        LngLat[] flight = this.greedy ? null : LatticePlanner.plan(this.visibilityGraph, waypoints[0],
+                waypoints[waypoints.length - 1], this.maxExpansions);
+        if (flight != null) {
+            // the flight starts where the drone path already does
+            for (int i = 1; i < flight.length; i++) {
+                dronePath.add(flight[i]);
+            }
+        }
+        else {
+            if (!this.greedy) {
+                System.err.println("Warning: lattice planner gave up from " + waypoints[0] + ", using greedy path");
+            }
+            for (int i = 1; i < waypoints.length; i++) {
+                dronePath.addAll(List.of(buildGreedyPath(dronePath.get(dronePath.size() - 1), waypoints[i])));
+            }
         }
 
         // double total_path_length = dronePath.size() * SystemConstants.DRONE_MOVE_DISTANCE;
@@ -160,20 +196,25 @@ public class DronePathFinder {
      * @return A list of drone positions which represent the incremental steps that the drone has to take in order to
      * go from wp_s to wp_d.
      * */
-    private LngLat[] buildPath(LngLat wp_s, LngLat wp_d) {
+    public LngLat[] buildGreedyPath(LngLat wp_s, LngLat wp_d) {
         LngLat current_node = wp_s;
         LngLatHandler lngLatHandler = new LngLatHandler();
+        ZoneSet zoneSet = this.visibilityGraph.getZoneSet();
         ArrayList<LngLat> dronePath = new ArrayList<>();
-        while (!lngLatHandler.isCloseTo(current_node, wp_d)) {
+        while (!lngLatHandler.isCloseTo(current_node, wp_d) && dronePath.size() < MAX_GREEDY_MOVES) {
             double angle = 0.0;
             ArrayList<Double> angles = new ArrayList<>();
             while (angle < 360) {
                 LngLat potential_neighbour = lngLatHandler.nextPosition(current_node, angle);
-                if (!lngLatHandler.isInRegions(potential_neighbour, this.context.getNoFlyZones())) {
+                // the whole move has to be allowed, not just where it ends
+                if (zoneSet.isStepAllowed(current_node, potential_neighbour)) {
                     angles.add(angle);
                 }
                 angle += 22.5;
             }
+            if (angles.isEmpty()) {
+                break;
+            }
             Double current_angle = getAngle(current_node, wp_d);
             angles.sort(Comparator.comparingDouble(o -> Math.abs(current_angle - o)));
             dronePath.add(current_node);
@@ -184,14 +225,16 @@ public class DronePathFinder {
                 return dronePath.toArray(new LngLat[0]);
             }
         }
-        System.err.println("Error: could not build path! Program terminating...");
+        System.err.println("Warning: greedy path stopped after " + dronePath.size() + " moves without getting close to "
+                + wp_d + ", the route ends short of it");
         return dronePath.toArray(new LngLat[0]);
     }
 
-    // used for buildPath() comparisons
+    // used for buildGreedyPath() comparisons
     // takes 0 degrees to mean east.
+    // a repeated position is a hover move; compared by value so that routes loaded from a RouteStore still hover
     public static double getAngle(LngLat p, LngLat q) {
-        if (p == q) {
+        if (p.equals(q)) {
             return 999.0;
         }
         double angle = Math.toDegrees(Math.atan2(q.lat() - p.lat(), q.lng() - p.lng()));
@@ -0,0 +1,364 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Plans a drone flight with the fewest possible moves, by running A* directly on the positions the drone can reach
+ * with its 16 compass moves, instead of flying from waypoint to waypoint and snapping the bearing to the nearest
+ * compass angle at every step as {@link DronePathFinder#buildGreedyPath(LngLat, LngLat)} does. The flight does not
+ * have to pass close to the corners of the no-fly zones, only to end close to the goal.
+ * <p>
+ * The cost of a path is its number of moves. The heuristic is the fewest moves that could possibly reach the goal:
+ * the length of the shortest way around the no-fly zones to the goal, less the close distance, divided by the move
+ * length. Lengths are measured in the norm of the 16-direction move set (the shortest way to cover an offset with
+ * moves along the two compass directions either side of it), and the shortest way goes straight to the goal or to a
+ * zone vertex the position can see and then from vertex to vertex, with distances to the goal from one Dijkstra per
+ * plan. The vertices are joined as in {@link VisibilityGraph#getAroundGraph()}, which unlike the routing graph also
+ * joins two vertices of the same zone along its edges and around its outside, so no way around a zone is missed.
+ * Every move covers exactly one move length in that norm, so the heuristic never overestimates, and the first goal
+ * A* takes off the queue has the fewest moves. Nothing is pruned on the heuristic: where the graph finds no way to the
+ * goal, the straight line is used instead.
+ * </p>
+ * <p>
+ * Positions reached by the same moves in a different order are the same position up to rounding, so positions are
+ * compared after snapping them to a grid far finer than a move. A search that expands more than its budget of
+ * positions gives up and returns null, so the caller can fall back to the greedy planner. The open set is a binary
+ * heap of position ids and the fewest moves to each grid cell are kept in an open-addressing table on the two snapped
+ * coordinates, so the search allocates nothing per position beyond growing its arrays.
+ * </p>
+ * */
+public final class LatticePlanner {
+    public static final int DEFAULT_MAX_EXPANSIONS = 200_000;
+    private static final double SECTOR = CompassMoves.SECTOR;
+    // the most the move-set norm of an offset can exceed its euclidean length, half way between two directions
+    private static final double MAX_STRETCH = 1.0 / Math.cos(Math.toRadians(SECTOR / 2));
+    // positions closer than this are the same position
+    private static final double SNAP = 1e-10;
+
+    private final ZoneSet zoneSet;
+    private final CsrGraph graph;
+    private final LngLat goal;
+    // length in the move-set norm of the shortest path from each static node to the goal
+    private final double[] toGoal;
+    // the static nodes that can reach the goal, nearest to it first
+    private final int[] byDistance;
+    // per position, in the order they were reached
+    private double[] lng = new double[1024];
+    private double[] lat = new double[1024];
+    private int[] parent = new int[1024];
+    private int[] moves = new int[1024];
+    private double[] remaining = new double[1024];
+    // moves plus remaining rounded up, the heap key
+    private int[] estimate = new int[1024];
+    private int size = 0;
+    // binary min-heap of position ids on estimate, then remaining
+    private int[] heap = new int[1024];
+    private int heapSize = 0;
+    // open-addressing table from snapped cell to the fewest moves reaching it, -1 marks a free slot
+    private long[] cellLng = new long[2048];
+    private long[] cellLat = new long[2048];
+    private int[] cellMoves = filled(2048);
+    private int cells = 0;
+
+    private LatticePlanner(VisibilityGraph visibilityGraph, LngLat goal) {
+        this.zoneSet = visibilityGraph.getZoneSet();
+        this.graph = visibilityGraph.getAroundGraph();
+        this.goal = goal;
+        this.toGoal = distancesToGoal(visibleFromGoal());
+        this.byDistance = IntStream.range(0, this.graph.size())
+                .filter(node -> this.toGoal[node] < Double.POSITIVE_INFINITY)
+                .boxed()
+                .sorted(Comparator.comparingDouble(node -> this.toGoal[node]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    // the nodes a straight path from the goal can reach, seen as the graph's nodes see each other
+    private int[] visibleFromGoal() {
+        ZoneGrid zoneGrid = this.zoneSet.getZoneGrid();
+        int[] goalZones = zoneGrid.zonesOf(this.goal);
+        return IntStream.range(0, this.graph.size())
+                .filter(node -> zoneGrid.seesAround(this.goal.lng(), this.goal.lat(), goalZones,
+                        this.graph.lng[node], this.graph.lat[node], zoneGrid.zonesOf(this.graph.nodes[node])))
+                .toArray();
+    }
+
+    // Dijkstra from the goal with edges measured in the move-set norm, edges are the same both ways
+    private double[] distancesToGoal(int[] goalVisible) {
+        int n = this.graph.size();
+        double[] distances = new double[n];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        PriorityQueue<double[]> open = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        for (int node: goalVisible) {
+            distances[node] = norm(this.graph.lng[node] - this.goal.lng(), this.graph.lat[node] - this.goal.lat());
+            open.add(new double[]{distances[node], node});
+        }
+        while (!open.isEmpty()) {
+            double[] entry = open.poll();
+            int node = (int) entry[1];
+            if (entry[0] > distances[node]) {
+                continue;
+            }
+            for (int e = this.graph.offsets[node]; e < this.graph.offsets[node + 1]; e++) {
+                int next = this.graph.targets[e];
+                double length = distances[node] + norm(this.graph.lng[next] - this.graph.lng[node],
+                        this.graph.lat[next] - this.graph.lat[node]);
+                if (length < distances[next]) {
+                    distances[next] = length;
+                    open.add(new double[]{length, next});
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * @param visibilityGraph The graph of the no-fly zones to avoid. Every move on the path is allowed by
+     *                        {@link ZoneSet#isStepAllowed(LngLat, LngLat)}.
+     * @param start Where the drone is.
+     * @param goal Where the drone wants to be close to.
+     * @param maxExpansions The most positions to expand before giving up.
+     * @return The positions from start to the first position close to goal, both included, with the fewest moves. An
+     * empty array if start is already close to goal, null if the search gave up or the goal cannot be reached.
+     * */
+    public static LngLat[] plan(VisibilityGraph visibilityGraph, LngLat start, LngLat goal, int maxExpansions) {
+        return new LatticePlanner(visibilityGraph, goal).search(start, maxExpansions);
+    }
+
+    /**
+     * A lower bound on the number of moves from one position to anywhere close to another when nothing is in the way,
+     * see {@link LatticePlanner}.
+     * */
+    public static double minimumMoves(LngLat from, LngLat to) {
+        double bound = norm(to.lng() - from.lng(), to.lat() - from.lat()) - SystemConstants.DRONE_IS_CLOSE_DISTANCE * MAX_STRETCH;
+        return Math.max(0.0, bound / SystemConstants.DRONE_MOVE_DISTANCE);
+    }
+
+    // length of an offset in the norm of the 16-direction move set
+    private static double norm(double dLng, double dLat) {
+        double length = Math.sqrt(dLng * dLng + dLat * dLat);
+        if (length == 0.0) {
+            return 0.0;
+        }
+        // offset between the direction to the goal and the compass direction just below it
+        double angle = Math.toDegrees(Math.atan2(dLat, dLng));
+        double offset = Math.toRadians(((angle % SECTOR) + SECTOR) % SECTOR);
+        double sector = Math.toRadians(SECTOR);
+        return length * (Math.sin(sector - offset) + Math.sin(offset)) / Math.sin(sector);
+    }
+
+    // a lower bound on the moves from a position to anywhere close to the goal
+    private double remainingMoves(double lng, double lat) {
+        ZoneGrid zoneGrid = this.zoneSet.getZoneGrid();
+        double straight = norm(this.goal.lng() - lng, this.goal.lat() - lat);
+        double shortest = Double.POSITIVE_INFINITY;
+        if (!zoneGrid.crossesEdge(lng, lat, this.goal.lng(), this.goal.lat())) {
+            shortest = straight;
+        }
+        for (int node: this.byDistance) {
+            if (this.toGoal[node] >= shortest) {
+                // every node from here on is further from the goal on its own
+                break;
+            }
+            double dLng = this.graph.lng[node] - lng;
+            double dLat = this.graph.lat[node] - lat;
+            // the norm is never less than the euclidean length, and the visibility test is the expensive part, so
+            // only make it when the node would help
+            if (Math.sqrt(dLng * dLng + dLat * dLat) + this.toGoal[node] >= shortest) {
+                continue;
+            }
+            double length = norm(dLng, dLat) + this.toGoal[node];
+            if (length < shortest && !zoneGrid.crossesEdge(lng, lat, this.graph.lng[node], this.graph.lat[node])) {
+                shortest = length;
+            }
+        }
+        if (shortest == Double.POSITIVE_INFINITY) {
+            // no way found, which the search can still prove wrong, and the straight line is never longer
+            shortest = straight;
+        }
+        double bound = (shortest - SystemConstants.DRONE_IS_CLOSE_DISTANCE * MAX_STRETCH) / SystemConstants.DRONE_MOVE_DISTANCE;
+        return Math.max(0.0, bound);
+    }
+
+    private LngLat[] search(LngLat start, int maxExpansions) {
+        if (isClose(start.lng(), start.lat())) {
+            return new LngLat[0];
+        }
+        int root = add(start.lng(), start.lat(), -1, 0);
+        putBest(start.lng(), start.lat(), 0);
+        push(root);
+
+        int expansions = 0;
+        while (this.heapSize > 0) {
+            int current = pop();
+            if (this.moves[current] > getBest(this.lng[current], this.lat[current])) {
+                // reached again with fewer moves since it was queued
+                continue;
+            }
+            double lng = this.lng[current];
+            double lat = this.lat[current];
+            if (current != root && isClose(lng, lat)) {
+                return path(current);
+            }
+            if (++expansions > maxExpansions) {
+                return null;
+            }
+            for (int direction = 0; direction < CompassMoves.DIRECTIONS; direction++) {
+                double nextLng = lng + CompassMoves.dLng(direction);
+                double nextLat = lat + CompassMoves.dLat(direction);
+                if (!this.zoneSet.isStepAllowed(lng, lat, nextLng, nextLat)) {
+                    continue;
+                }
+                int nextMoves = this.moves[current] + 1;
+                int seen = getBest(nextLng, nextLat);
+                if (seen >= 0 && seen <= nextMoves) {
+                    continue;
+                }
+                putBest(nextLng, nextLat, nextMoves);
+                push(add(nextLng, nextLat, current, nextMoves));
+            }
+        }
+        return null;
+    }
+
+    private int add(double lng, double lat, int parent, int moves) {
+        if (this.size == this.lng.length) {
+            int capacity = this.size * 2;
+            this.lng = Arrays.copyOf(this.lng, capacity);
+            this.lat = Arrays.copyOf(this.lat, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.moves = Arrays.copyOf(this.moves, capacity);
+            this.remaining = Arrays.copyOf(this.remaining, capacity);
+            this.estimate = Arrays.copyOf(this.estimate, capacity);
+            this.heap = Arrays.copyOf(this.heap, capacity);
+        }
+        this.lng[this.size] = lng;
+        this.lat[this.size] = lat;
+        this.parent[this.size] = parent;
+        this.moves[this.size] = moves;
+        this.remaining[this.size] = isClose(lng, lat) ? 0.0 : remainingMoves(lng, lat);
+        // moves so far plus the fewest moves still needed, goals need none
+        this.estimate[this.size] = moves + (int) Math.ceil(this.remaining[this.size] - 1e-9);
+        return this.size++;
+    }
+
+    // LngLatHandler.isCloseTo on primitives
+    private boolean isClose(double lng, double lat) {
+        return CsrGraph.distance(lng, lat, this.goal.lng(), this.goal.lat()) <= SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+    }
+
+    private LngLat[] path(int node) {
+        LngLat[] path = new LngLat[this.moves[node] + 1];
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = new LngLat(this.lng[node], this.lat[node]);
+            node = this.parent[node];
+        }
+        return path;
+    }
+
+    //------------------------------------------------------------------
+    // Binary min-heap of position ids, fewest total moves first, then the position nearest the goal, so ties go deep
+    // rather than wide. Sifts like java.util.PriorityQueue, so equal positions leave in the same order.
+    private boolean before(int a, int b) {
+        if (this.estimate[a] != this.estimate[b]) {
+            return this.estimate[a] < this.estimate[b];
+        }
+        return Double.compare(this.remaining[a], this.remaining[b]) < 0;
+    }
+
+    private void push(int node) {
+        int i = this.heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (!before(node, this.heap[up])) {
+                break;
+            }
+            this.heap[i] = this.heap[up];
+            i = up;
+        }
+        this.heap[i] = node;
+    }
+
+    private int pop() {
+        int top = this.heap[0];
+        int node = this.heap[--this.heapSize];
+        int i = 0;
+        int half = this.heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.heapSize && before(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!before(this.heap[child], node)) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        this.heap[i] = node;
+        return top;
+    }
+
+    //------------------------------------------------------------------
+    // Open-addressing table with linear probing on the snapped coordinates of a position
+    private static int[] filled(int capacity) {
+        int[] moves = new int[capacity];
+        Arrays.fill(moves, -1);
+        return moves;
+    }
+
+    // the slot of the cell, or the free slot where it would go
+    private int slot(long lng, long lat) {
+        int mask = this.cellMoves.length - 1;
+        long hash = (lng * 0x9E3779B97F4A7C15L) ^ (lat * 0xC2B2AE3D27D4EB4FL);
+        int i = (int) (hash ^ (hash >>> 32)) & mask;
+        while (this.cellMoves[i] >= 0 && (this.cellLng[i] != lng || this.cellLat[i] != lat)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // the fewest moves found to the position's cell, or -1 if it has not been reached
+    private int getBest(double lng, double lat) {
+        return this.cellMoves[slot(Math.round(lng / SNAP), Math.round(lat / SNAP))];
+    }
+
+    private void putBest(double lng, double lat, int moves) {
+        long snappedLng = Math.round(lng / SNAP);
+        long snappedLat = Math.round(lat / SNAP);
+        int i = slot(snappedLng, snappedLat);
+        if (this.cellMoves[i] < 0) {
+            if (2 * (this.cells + 1) > this.cellMoves.length) {
+                grow();
+                i = slot(snappedLng, snappedLat);
+            }
+            this.cellLng[i] = snappedLng;
+            this.cellLat[i] = snappedLat;
+            this.cells += 1;
+        }
+        this.cellMoves[i] = moves;
+    }
+
+    private void grow() {
+        long[] oldLng = this.cellLng;
+        long[] oldLat = this.cellLat;
+        int[] oldMoves = this.cellMoves;
+        this.cellLng = new long[oldMoves.length * 2];
+        this.cellLat = new long[oldMoves.length * 2];
+        this.cellMoves = filled(oldMoves.length * 2);
+        for (int i = 0; i < oldMoves.length; i++) {
+            if (oldMoves[i] >= 0) {
+                int j = slot(oldLng[i], oldLat[i]);
+                this.cellLng[j] = oldLng[i];
+                this.cellLat[j] = oldLat[i];
+                this.cellMoves[j] = oldMoves[i];
+            }
+        }
+    }
+}
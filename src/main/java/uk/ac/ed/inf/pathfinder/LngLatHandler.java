@@ -5,8 +5,6 @@ import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.ilp.interfaces.LngLatHandling;
 
-import java.util.ArrayList;
-
 import static java.lang.Math.*;
 
 public class LngLatHandler implements LngLatHandling {
@@ -28,7 +26,7 @@ public class LngLatHandler implements LngLatHandling {
         Associate each vertex to form exactly one edge with its
         neighbour vertex, with the last vertex connected to the first.
         */
-        ArrayList<LngLat[]> regionEdges = regionEdgesBuilder(region);
+        LngLat[] vertices = region.vertices();
         /**
          * then check if point lies within edges by
         using ray-casting algorithm and even-odd rule.
@@ -39,11 +37,13 @@ public class LngLatHandler implements LngLatHandling {
         implementation not fully robust on edge cases
         */
         int sum = 0;
-        for (LngLat[] tuple: regionEdges) {
-            double x1 = tuple[0].lat();
-            double x2 = tuple[1].lat();
-            double y1 = tuple[0].lng();
-            double y2 = tuple[1].lng();
+        for (int i = 0; i < vertices.length; i++) {
+            LngLat p = vertices[i];
+            LngLat q = vertices[(i + 1) % vertices.length];
+            double x1 = p.lat();
+            double x2 = q.lat();
+            double y1 = p.lng();
+            double y2 = q.lng();
             boolean a = (position.lng() < y1) != (position.lng() < y2);
             boolean b = position.lat() < (x1 + ((position.lng() - y1) / (y2 - y1)) * (x2-x1));
             if (a & b) {
@@ -56,10 +56,9 @@ public class LngLatHandler implements LngLatHandling {
 
     // returns true if point is in all regions
     public boolean isInRegions(LngLat point, NamedRegion[] regions) {
-        LngLatHandler lngLatHandler = new LngLatHandler();
         boolean inRegion = false;
         for (NamedRegion region: regions) {
-            if (lngLatHandler.isInRegion(point, region)) {
+            if (isInRegion(point, region)) {
                 inRegion = true;
                 break;
             }
@@ -67,23 +66,13 @@ public class LngLatHandler implements LngLatHandling {
         return inRegion;
     }
 
-    private static ArrayList<LngLat[]> regionEdgesBuilder(NamedRegion region) {
-        ArrayList<LngLat[]> regionEdges = new ArrayList<>(region.vertices().length);
-        for (int i = 0; i < region.vertices().length; i++) {
-            LngLat[] tuple;
-            if (i < region.vertices().length - 1) {
-                tuple = new LngLat[]{region.vertices()[i], region.vertices()[i + 1]};
-            }
-            else {
-                tuple = new LngLat[]{region.vertices()[i], region.vertices()[0]};
-            }
-            regionEdges.add(tuple);
-        }
-        return regionEdges;
-    }
-
     @Override
     public LngLat nextPosition(LngLat startPosition, double angle) {
+        // the 16 compass angles are looked up, any other angle is still worked out
+        int direction = CompassMoves.direction(angle);
+        if (direction >= 0) {
+            return CompassMoves.move(startPosition, direction);
+        }
         double resultLng = startPosition.lng();
         double resultLat = startPosition.lat();
         if (angle != 999.0) {
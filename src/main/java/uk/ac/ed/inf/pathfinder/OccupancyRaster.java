@@ -0,0 +1,263 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Precomputed answers to "is this position in a no-fly zone" over the area the drone flies in, so that most of the
+ * 16 candidate moves checked at every drone step are a bit lookup. The area is split into square cells, and every
+ * cell is marked free, blocked, or boundary when a zone edge passes close to it. Free and blocked cells answer
+ * immediately, boundary cells fall back to the exact {@link ZoneGrid#isInAny(LngLat)} test, so answers are always the
+ * same as without the raster.
+ * The raster covers the bounding box of the central area and the no-fly zones. Positions outside it are in no zone.
+ * It is optional and configured with system properties:
+ * <ul>
+ *     <li>{@value #CELL_SIZE_PROPERTY}: the cell size in degrees, 0 disables the raster. Defaults to half a move.</li>
+ *     <li>{@value #MAX_CELLS_PROPERTY}: the most cells the raster may have. Cells are made larger when the area
+ *     would need more, so the raster never takes more than maxCells / 4 bytes. Defaults to 4194304 (1 MiB).</li>
+ * </ul>
+ * */
+public final class OccupancyRaster {
+    public static final String CELL_SIZE_PROPERTY = "pizzadronz.raster.cellSize";
+    public static final String MAX_CELLS_PROPERTY = "pizzadronz.raster.maxCells";
+    public static final double DEFAULT_CELL_SIZE = SystemConstants.DRONE_MOVE_DISTANCE / 2;
+    public static final long DEFAULT_MAX_CELLS = 1L << 22;
+
+    // cell states, two bits per cell
+    static final int FREE = 0;
+    static final int BLOCKED = 1;
+    static final int BOUNDARY = 2;
+    // cells this close to an edge are boundary cells, much more than rounding can move an answer
+    private static final double MARGIN = 1e-9;
+
+    private final ZoneGrid zoneGrid;
+    private final double minLng;
+    private final double minLat;
+    private final double maxLng;
+    private final double maxLat;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final long[] cells;
+
+    private OccupancyRaster(NamedRegion centralArea, NamedRegion[] noFlyZones, ZoneGrid zoneGrid, double cellSize,
+                            long maxCells) {
+        this.zoneGrid = zoneGrid;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (LngLat vertex: centralArea.vertices()) {
+            minLng = Math.min(minLng, vertex.lng());
+            maxLng = Math.max(maxLng, vertex.lng());
+            minLat = Math.min(minLat, vertex.lat());
+            maxLat = Math.max(maxLat, vertex.lat());
+        }
+        for (NamedRegion zone: noFlyZones) {
+            for (LngLat vertex: zone.vertices()) {
+                minLng = Math.min(minLng, vertex.lng());
+                maxLng = Math.max(maxLng, vertex.lng());
+                minLat = Math.min(minLat, vertex.lat());
+                maxLat = Math.max(maxLat, vertex.lat());
+            }
+        }
+        // no vertices at all
+        if (minLng > maxLng) {
+            minLng = maxLng = minLat = maxLat = 0.0;
+        }
+        // keep every zone strictly inside, so that anything outside is free
+        this.minLng = minLng - 2 * MARGIN;
+        this.minLat = minLat - 2 * MARGIN;
+        this.maxLng = maxLng + 2 * MARGIN;
+        this.maxLat = maxLat + 2 * MARGIN;
+        double width = this.maxLng - this.minLng;
+        double height = this.maxLat - this.minLat;
+
+        // grow the cells until the raster fits in maxCells
+        double size = Math.max(cellSize, Math.sqrt(width * height / Math.max(maxCells, 1)));
+        while ((long) Math.ceil(width / size) * (long) Math.ceil(height / size) > maxCells && size < width + height) {
+            size *= 1.01;
+        }
+        this.cellSize = size;
+        this.columns = (int) Math.max(1, Math.ceil(width / size));
+        this.rows = (int) Math.max(1, Math.ceil(height / size));
+        this.cells = new long[(int) (((long) this.columns * this.rows * 2 + 63) / 64)];
+
+        // cells near an edge of a zone (including the edge from its last vertex back to its first) are boundary
+        for (NamedRegion zone: noFlyZones) {
+            LngLat[] vertices = zone.vertices();
+            for (int i = 0; i < vertices.length; i++) {
+                markBoundary(vertices[i], vertices[(i + 1) % vertices.length]);
+            }
+        }
+        // no edge is near any other cell, so the whole cell is on the same side of every edge as its centre
+        for (int c = 0; c < this.columns; c++) {
+            for (int r = 0; r < this.rows; r++) {
+                if (get(c, r) == BOUNDARY) {
+                    continue;
+                }
+                LngLat centre = new LngLat(this.minLng + (c + 0.5) * this.cellSize, this.minLat + (r + 0.5) * this.cellSize);
+                if (zoneGrid.isInAny(centre)) {
+                    set(c, r, BLOCKED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the raster configured by the system properties, see {@link OccupancyRaster}.
+     * @return The raster, or null if it is disabled.
+     * */
+    static OccupancyRaster fromSystemProperties(NamedRegion centralArea, NamedRegion[] noFlyZones, ZoneGrid zoneGrid) {
+        double cellSize = DEFAULT_CELL_SIZE;
+        long maxCells = DEFAULT_MAX_CELLS;
+        try {
+            cellSize = Double.parseDouble(System.getProperty(CELL_SIZE_PROPERTY, Double.toString(DEFAULT_CELL_SIZE)));
+            maxCells = Long.parseLong(System.getProperty(MAX_CELLS_PROPERTY, Long.toString(DEFAULT_MAX_CELLS)));
+        }
+        catch (NumberFormatException e) {
+            System.err.println("Warning: invalid " + CELL_SIZE_PROPERTY + " or " + MAX_CELLS_PROPERTY + ", using the defaults");
+        }
+        if (!(cellSize > 0.0) || maxCells <= 0) {
+            return null;
+        }
+        return new OccupancyRaster(centralArea, noFlyZones, zoneGrid, cellSize, maxCells);
+    }
+
+    /**
+     * Builds a raster for the zone set with the given resolution, whatever the system properties say.
+     * */
+    public static OccupancyRaster of(ZoneSet zoneSet, double cellSize, long maxCells) {
+        return new OccupancyRaster(zoneSet.getCentralArea(), zoneSet.getNoFlyZones(), zoneSet.getZoneGrid(), cellSize,
+                maxCells);
+    }
+
+    // marks every cell within the margin of the segment pq, one column at a time
+    private void markBoundary(LngLat p, LngLat q) {
+        double px = p.lng();
+        double py = p.lat();
+        double qx = q.lng();
+        double qy = q.lat();
+        double segmentMinLat = Math.min(py, qy) - MARGIN;
+        double segmentMaxLat = Math.max(py, qy) + MARGIN;
+        int c0 = column(Math.min(px, qx) - MARGIN);
+        int c1 = column(Math.max(px, qx) + MARGIN);
+        for (int c = c0; c <= c1; c++) {
+            int r0;
+            int r1;
+            if (c0 == c1 || px == qx) {
+                r0 = row(segmentMinLat);
+                r1 = row(segmentMaxLat);
+            }
+            else {
+                double left = this.minLng + c * this.cellSize - MARGIN;
+                double right = left + this.cellSize + 2 * MARGIN;
+                double slope = (qy - py) / (qx - px);
+                double leftLat = py + (left - px) * slope;
+                double rightLat = py + (right - px) * slope;
+                r0 = row(Math.max(segmentMinLat, Math.min(leftLat, rightLat) - MARGIN));
+                r1 = row(Math.min(segmentMaxLat, Math.max(leftLat, rightLat) + MARGIN));
+            }
+            for (int r = r0; r <= r1; r++) {
+                set(c, r, BOUNDARY);
+            }
+        }
+    }
+
+    private int column(double lng) {
+        int column = (int) Math.floor((lng - this.minLng) / this.cellSize);
+        return Math.max(0, Math.min(this.columns - 1, column));
+    }
+
+    private int row(double lat) {
+        int row = (int) Math.floor((lat - this.minLat) / this.cellSize);
+        return Math.max(0, Math.min(this.rows - 1, row));
+    }
+
+    private int get(int column, int row) {
+        long bit = ((long) column * this.rows + row) * 2;
+        return (int) (this.cells[(int) (bit >>> 6)] >>> (bit & 63)) & 3;
+    }
+
+    private void set(int column, int row, int state) {
+        long bit = ((long) column * this.rows + row) * 2;
+        int word = (int) (bit >>> 6);
+        this.cells[word] = (this.cells[word] & ~(3L << (bit & 63))) | ((long) state << (bit & 63));
+    }
+
+    /**
+     * @return The state of the cell holding the position: {@link #FREE}, {@link #BLOCKED} or {@link #BOUNDARY}.
+     * */
+    int stateOf(double lng, double lat) {
+        if (!(lng >= this.minLng && lng < this.maxLng && lat >= this.minLat && lat < this.maxLat)) {
+            return FREE;
+        }
+        return get(column(lng), row(lat));
+    }
+
+    /**
+     * Same answer as {@link ZoneGrid#isInAny(LngLat)}.
+     * @return True if the position is in any no-fly zone.
+     * */
+    public boolean isInAny(LngLat position) {
+        return isInAny(position.lng(), position.lat());
+    }
+
+    /**
+     * Same as {@link #isInAny(LngLat)}, for coordinates held in primitives.
+     * */
+    boolean isInAny(double lng, double lat) {
+        int state = stateOf(lng, lat);
+        if (state == BOUNDARY) {
+            return this.zoneGrid.isInAny(lng, lat);
+        }
+        return state == BLOCKED;
+    }
+
+    /**
+     * A fast check for a drone move: true only when every cell of the move's bounding box is free, so no zone edge
+     * comes near the move and it cannot touch a zone. False means the exact test is needed.
+     * */
+    public boolean isClear(double px, double py, double qx, double qy) {
+        // the zones are strictly inside the raster, so only the part of the box inside it matters
+        int c0 = column(Math.min(px, qx));
+        int c1 = column(Math.max(px, qx));
+        int r0 = row(Math.min(py, qy));
+        int r1 = row(Math.max(py, qy));
+        for (int c = c0; c <= c1; c++) {
+            for (int r = r0; r <= r1; r++) {
+                if (get(c, r) != FREE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int getColumns() {
+        return this.columns;
+    }
+    public int getRows() {
+        return this.rows;
+    }
+    public double getCellSize() {
+        return this.cellSize;
+    }
+
+    @Override
+    public String toString() {
+        int free = 0;
+        int blocked = 0;
+        for (int c = 0; c < this.columns; c++) {
+            for (int r = 0; r < this.rows; r++) {
+                int state = get(c, r);
+                free += (state == FREE) ? 1 : 0;
+                blocked += (state == BLOCKED) ? 1 : 0;
+            }
+        }
+        int total = this.columns * this.rows;
+        return "OccupancyRaster{" + this.columns + "x" + this.rows + ", free=" + free + ", blocked=" + blocked
+                + ", boundary=" + (total - free - blocked) + "}";
+    }
+}
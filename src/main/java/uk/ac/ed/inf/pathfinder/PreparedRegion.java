@@ -0,0 +1,106 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * A {@link NamedRegion} prepared for repeated point-in-region tests. The edges are stored once in a flat array and a
+ * bounding box rejects most points before any edge is looked at, so {@link #contains(LngLat)} does not allocate.
+ * It gives exactly the same answers as {@link LngLatHandler#isInRegion(LngLat, NamedRegion)}: the same ray casting
+ * arithmetic runs on the same edge deltas, only computed ahead of time.
+ * */
+public final class PreparedRegion {
+    // values per edge in the edges array
+    private static final int STRIDE = 5;
+    // ray casting can place a crossing a few ulps outside the polygon, so the lat reject is kept this far out
+    private static final double MARGIN = 1e-9;
+
+    // per edge: lat and lng of its first vertex, lng of its second vertex, and the lat and lng deltas between them
+    private final double[] edges;
+    private final double minLng;
+    private final double maxLng;
+    private final double minLat;
+    private final double maxLat;
+
+    private PreparedRegion(NamedRegion region) {
+        LngLat[] vertices = region.vertices();
+        int n = vertices.length;
+        this.edges = new double[n * STRIDE];
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            // the last vertex is connected to the first
+            LngLat p = vertices[i];
+            LngLat q = vertices[(i + 1) % n];
+            int e = i * STRIDE;
+            this.edges[e] = p.lat();
+            this.edges[e + 1] = p.lng();
+            this.edges[e + 2] = q.lng();
+            this.edges[e + 3] = q.lat() - p.lat();
+            this.edges[e + 4] = q.lng() - p.lng();
+            minLng = Math.min(minLng, p.lng());
+            maxLng = Math.max(maxLng, p.lng());
+            minLat = Math.min(minLat, p.lat());
+            maxLat = Math.max(maxLat, p.lat());
+        }
+        this.minLng = minLng;
+        this.maxLng = maxLng;
+        this.minLat = minLat - MARGIN;
+        this.maxLat = maxLat + MARGIN;
+    }
+
+    public static PreparedRegion of(NamedRegion region) {
+        return new PreparedRegion(region);
+    }
+
+    public static PreparedRegion[] of(NamedRegion[] regions) {
+        PreparedRegion[] prepared = new PreparedRegion[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            prepared[i] = new PreparedRegion(regions[i]);
+        }
+        return prepared;
+    }
+
+    public boolean contains(LngLat position) {
+        return contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Ray casting with the even-odd rule, as in {@link LngLatHandler#isInRegion(LngLat, NamedRegion)}, which treats
+     * lng values as y and lat values as x.
+     * */
+    public boolean contains(double lng, double lat) {
+        // no edge can be crossed by a ray from outside the lng range, and a ray from outside the lat range crosses
+        // an even number of them
+        if (lng < this.minLng || lng >= this.maxLng || lat < this.minLat || lat > this.maxLat) {
+            return false;
+        }
+        boolean inside = false;
+        for (int e = 0; e < this.edges.length; e += STRIDE) {
+            double x1 = this.edges[e];
+            double y1 = this.edges[e + 1];
+            double y2 = this.edges[e + 2];
+            if ((lng < y1) != (lng < y2)
+                    && lat < (x1 + ((lng - y1) / this.edges[e + 4]) * this.edges[e + 3])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @return True if the position is in any of the regions.
+     * */
+    public static boolean isInAny(PreparedRegion[] regions, LngLat position) {
+        double lng = position.lng();
+        double lat = position.lat();
+        for (PreparedRegion region: regions) {
+            if (region.contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of complete drone routes, keyed by (src, dest, {@link ZoneSet#getContentHash() obstacle hash}).
+ * Since a route only depends on its endpoints and the obstacles, a route computed for one order can be reused by every
+ * other order going to the same restaurant. A change to the no-fly zones or the central area changes the hash, so stale
+ * routes are never returned.
+ * <p>
+ * The least recently used route is evicted once {@link #getCapacity() capacity} is reached. When several threads ask
+ * for the same missing route, it is computed by exactly one of them and the others wait for the result.
+ * </p>
+ * <p>
+ * Routes are held as {@link CompactRoute}s, one byte per move, so the cache holds many more routes in the same
+ * memory. A route that cannot be encoded, because some step of it is not a compass move, is held as a plain list.
+ * </p>
+ * <p>
+ * Optionally a {@link RouteStore} backs the cache, in which case misses are first looked up on disk and newly computed
+ * routes are handed to the store.
+ * </p>
+ * */
+public class RouteCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    // access ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<RouteKey, FutureTask<List<LngLat>>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // misses that were answered by the store instead of being computed
+    private final AtomicLong loaded = new AtomicLong();
+    private final RouteStore store;
+
+    public RouteCache() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    public RouteCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity Maximum number of routes held in memory.
+     * @param store Persistent store consulted on a miss, or null to always compute misses.
+     * */
+    public RouteCache(int capacity, RouteStore store) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Route cache capacity must be positive, got: " + capacity);
+        }
+        this.capacity = capacity;
+        this.store = store;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RouteKey, FutureTask<List<LngLat>>> eldest) {
+                return size() > RouteCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached route from src to dest, or computes it with the given supplier if it is not cached yet.
+     * @param src Where the route starts.
+     * @param dest Where the route goes to.
+     * @param zoneSet The obstacles the route was computed against.
+     * @param route Computes the route on a miss, for example {@link DronePathFinder#getRoute()}.
+     * @return The route, unmodifiable.
+     * */
+    public List<LngLat> getRoute(LngLat src, LngLat dest, ZoneSet zoneSet, Supplier<? extends List<LngLat>> route) {
+        RouteKey key = new RouteKey(src, dest, zoneSet);
+        FutureTask<List<LngLat>> task;
+        boolean miss = false;
+        synchronized (this.entries) {
+            task = this.entries.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> loadOrCompute(src, dest, route));
+                this.entries.put(key, task);
+                miss = true;
+            }
+        }
+        if (miss) {
+            this.misses.incrementAndGet();
+            // compute outside the lock so that other routes can still be served meanwhile
+            task.run();
+        }
+        else {
+            this.hits.incrementAndGet();
+        }
+        try {
+            return task.get();
+        }
+        catch (ExecutionException e) {
+            // don't cache failures, the next caller will try again
+            synchronized (this.entries) {
+                this.entries.remove(key, task);
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<LngLat> loadOrCompute(LngLat src, LngLat dest, Supplier<? extends List<LngLat>> route) {
+        if (this.store == null) {
+            return compact(route.get());
+        }
+        List<LngLat> stored = this.store.get(src, dest);
+        if (stored != null) {
+            this.loaded.incrementAndGet();
+            return (stored instanceof CompactRoute) ? stored : Collections.unmodifiableList(stored);
+        }
+        List<LngLat> computed = compact(route.get());
+        this.store.put(src, dest, computed);
+        return computed;
+    }
+
+    private static List<LngLat> compact(List<LngLat> route) {
+        CompactRoute compactRoute = CompactRoute.encode(route);
+        return (compactRoute != null) ? compactRoute : Collections.unmodifiableList(new ArrayList<>(route));
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public long getHits() {
+        return this.hits.get();
+    }
+    public long getMisses() {
+        return this.misses.get();
+    }
+    public long getLoaded() {
+        return this.loaded.get();
+    }
+    public int getCapacity() {
+        return this.capacity;
+    }
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache{hits=" + getHits() + ", misses=" + getMisses() + ", loaded=" + getLoaded()
+                + ", size=" + size() + "/" + this.capacity + "}";
+    }
+}
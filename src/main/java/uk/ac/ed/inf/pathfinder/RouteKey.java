@@ -0,0 +1,13 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Identifies a route by its endpoints and the {@link ZoneSet#getContentHash() hash} of the obstacles it was computed
+ * against. Used by both {@link RouteCache} and {@link RouteStore}.
+ * */
+record RouteKey(LngLat src, LngLat dest, long zoneHash) {
+    RouteKey(LngLat src, LngLat dest, ZoneSet zoneSet) {
+        this(src, dest, zoneSet.getContentHash());
+    }
+}
@@ -0,0 +1,261 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists complete drone routes between runs in a compact binary file, so that a cold JVM can reuse routes computed
+ * by an earlier run instead of running A* and {@link DronePathFinder#getRoute()} again.
+ * <p>
+ * The file is memory-mapped and laid out as a header ({@link #MAGIC}, {@link #VERSION}, entry count) followed by one
+ * record per route: src lng/lat, dest lng/lat, the {@link ZoneSet#getContentHash() zone hash}, the length and kind of
+ * the route, and then the route. A route is either a {@link CompactRoute} (start and one byte per move) or, for routes
+ * that cannot be encoded that way, the points as packed lng/lat doubles. Only the record headers are read on
+ * {@link #open(Path, ZoneSet)}; routes are decoded from the mapping when they are requested.
+ * </p>
+ * <p>
+ * A store is opened for one {@link ZoneSet}. Records computed against any other no-fly zones or central area are
+ * ignored when loading, so a change to /noFlyZones or /centralArea invalidates every stored route. They are still
+ * copied through on {@link #save()}, up to {@link #MAX_OTHER_RECORDS} of the most recent ones, so that a run against
+ * different obstacles (or against none, when the server could not be reached) does not wipe the store.
+ * </p>
+ * */
+public class RouteStore {
+    public static final int MAGIC = 0x50445243; // "PDRC"
+    // version 2: routes are built by the LatticePlanner
+    // version 3: routes are stored as CompactRoutes where possible
+    // version 4: every move is checked as a segment against the closed zones, and routes never enter the central area
+    // from outside on the way out
+    public static final int VERSION = 4;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    // src lng/lat, dest lng/lat, zone hash, route bytes, route kind
+    private static final int RECORD_HEADER_BYTES = 4 * Double.BYTES + Long.BYTES + Integer.BYTES + 1;
+    private static final int POINT_BYTES = 2 * Double.BYTES;
+    private static final byte POINTS = 0;
+    private static final byte COMPACT = 1;
+    // records for other zone sets that are kept on save, the oldest are dropped first
+    public static final int MAX_OTHER_RECORDS = 4096;
+
+    private final Path path;
+    private final ZoneSet zoneSet;
+    // mapping of the file as it was when opened, null if there was no usable file
+    private MappedByteBuffer mapped;
+    // record offsets into mapped, for routes that are still valid
+    private final HashMap<RouteKey, Integer> stored = new HashMap<>();
+    // routes added since the file was opened
+    private final LinkedHashMap<RouteKey, List<LngLat>> added = new LinkedHashMap<>();
+    // record offsets into mapped, in file order, for routes made for other zone sets
+    private final ArrayList<Integer> others = new ArrayList<>();
+    private int invalidated = 0;
+    // true if the file on disk is missing routes or holds more than MAX_OTHER_RECORDS invalidated ones
+    private boolean dirty = false;
+
+    private RouteStore(Path path, ZoneSet zoneSet) {
+        this.path = path;
+        this.zoneSet = zoneSet;
+    }
+
+    /**
+     * Opens the store at the given path. A missing, truncated or foreign file is treated as an empty store and is
+     * overwritten on the next {@link #save()}.
+     * @param path Location of the route file.
+     * @param zoneSet The obstacles the current run routes against.
+     * @return The opened store.
+     * */
+    public static RouteStore open(Path path, ZoneSet zoneSet) {
+        RouteStore store = new RouteStore(path, zoneSet);
+        if (Files.isRegularFile(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                store.index(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            catch (IOException | RuntimeException e) {
+                System.err.println("Warning: ignoring unreadable route store " + path + ": " + e.getMessage());
+                store.mapped = null;
+                store.stored.clear();
+                store.others.clear();
+                store.dirty = true;
+            }
+        }
+        return store;
+    }
+
+    // reads every record header, remembering the offsets of records made for the current zone set
+    private void index(MappedByteBuffer buffer) {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            System.err.println("Warning: " + this.path + " is not a version " + VERSION + " route store, ignoring it");
+            this.dirty = true;
+            return;
+        }
+        int count = buffer.getInt(8);
+        int offset = HEADER_BYTES;
+        for (int i = 0; i < count; i++) {
+            if (offset + RECORD_HEADER_BYTES > buffer.limit()) {
+                throw new IllegalStateException("route store is truncated");
+            }
+            LngLat src = new LngLat(buffer.getDouble(offset), buffer.getDouble(offset + 8));
+            LngLat dest = new LngLat(buffer.getDouble(offset + 16), buffer.getDouble(offset + 24));
+            long zoneHash = buffer.getLong(offset + 32);
+            int length = buffer.getInt(offset + 40);
+            if (length < 0 || offset + RECORD_HEADER_BYTES + (long) length > buffer.limit()) {
+                throw new IllegalStateException("route store is truncated");
+            }
+            if (zoneHash == this.zoneSet.getContentHash()) {
+                this.stored.put(new RouteKey(src, dest, zoneHash), offset);
+            }
+            else {
+                this.others.add(offset);
+                this.invalidated += 1;
+            }
+            offset += RECORD_HEADER_BYTES + length;
+        }
+        if (this.others.size() > MAX_OTHER_RECORDS) {
+            this.others.subList(0, this.others.size() - MAX_OTHER_RECORDS).clear();
+            this.dirty = true;
+        }
+        this.mapped = buffer;
+    }
+
+    /**
+     * @return The stored route from src to dest for this store's zone set, or null if there is none.
+     * */
+    public synchronized List<LngLat> get(LngLat src, LngLat dest) {
+        RouteKey key = new RouteKey(src, dest, this.zoneSet);
+        List<LngLat> route = this.added.get(key);
+        if (route != null) {
+            return route;
+        }
+        Integer offset = this.stored.get(key);
+        if (offset == null) {
+            return null;
+        }
+        int position = offset + RECORD_HEADER_BYTES;
+        if (this.mapped.get(offset + 44) == COMPACT) {
+            return CompactRoute.readFrom(this.mapped, position);
+        }
+        int points = this.mapped.getInt(offset + 40) / POINT_BYTES;
+        ArrayList<LngLat> decoded = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            decoded.add(new LngLat(this.mapped.getDouble(position), this.mapped.getDouble(position + 8)));
+            position += POINT_BYTES;
+        }
+        return decoded;
+    }
+
+    /**
+     * Remembers a route so that it is written out on the next {@link #save()}.
+     * */
+    public synchronized void put(LngLat src, LngLat dest, List<LngLat> route) {
+        RouteKey key = new RouteKey(src, dest, this.zoneSet);
+        if (!this.stored.containsKey(key) && !this.added.containsKey(key)) {
+            // compact routes are already immutable
+            this.added.put(key, (route instanceof CompactRoute) ? route : List.copyOf(route));
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Writes every valid route, and the kept routes of other zone sets, to a temporary file next to {@link #path} and then moves it over the old file, so a
+     * crash during saving never leaves a half-written store behind. Does nothing if the file is already up to date.
+     * */
+    public synchronized void save() {
+        if (!this.dirty) {
+            return;
+        }
+        long size = HEADER_BYTES;
+        for (int offset: this.others) {
+            size += RECORD_HEADER_BYTES + (long) this.mapped.getInt(offset + 40);
+        }
+        for (int offset: this.stored.values()) {
+            size += RECORD_HEADER_BYTES + (long) this.mapped.getInt(offset + 40);
+        }
+        for (List<LngLat> route: this.added.values()) {
+            size += RECORD_HEADER_BYTES + (long) routeBytes(route);
+        }
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC).putInt(VERSION).putInt(this.others.size() + this.stored.size() + this.added.size());
+            // copy kept records straight from the old mapping, the other zone sets' first so they age out in order
+            for (int offset: this.others) {
+                copyRecord(out, offset);
+            }
+            for (int offset: this.stored.values()) {
+                copyRecord(out, offset);
+            }
+            for (Map.Entry<RouteKey, List<LngLat>> entry: this.added.entrySet()) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.force();
+        }
+        catch (IOException e) {
+            System.err.println("Error: could not write route store " + temp + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+        }
+        catch (IOException e) {
+            System.err.println("Error: could not replace route store " + this.path + ": " + e.getMessage());
+        }
+    }
+
+    private void copyRecord(ByteBuffer out, int offset) {
+        int length = RECORD_HEADER_BYTES + this.mapped.getInt(offset + 40);
+        out.put(this.mapped.slice(offset, length));
+    }
+
+    private static void writeRecord(ByteBuffer out, RouteKey key, List<LngLat> route) {
+        out.putDouble(key.src().lng()).putDouble(key.src().lat());
+        out.putDouble(key.dest().lng()).putDouble(key.dest().lat());
+        out.putLong(key.zoneHash());
+        out.putInt(routeBytes(route));
+        if (route instanceof CompactRoute compactRoute) {
+            out.put(COMPACT);
+            compactRoute.writeTo(out);
+            return;
+        }
+        out.put(POINTS);
+        for (LngLat point: route) {
+            out.putDouble(point.lng()).putDouble(point.lat());
+        }
+    }
+
+    private static int routeBytes(List<LngLat> route) {
+        if (route instanceof CompactRoute compactRoute) {
+            return compactRoute.getEncodedBytes();
+        }
+        return route.size() * POINT_BYTES;
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public synchronized int size() {
+        return this.stored.size() + this.added.size();
+    }
+
+    /**
+     * @return The number of records found in the file that were made for different obstacles.
+     * */
+    public synchronized int getInvalidated() {
+        return this.invalidated;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+}
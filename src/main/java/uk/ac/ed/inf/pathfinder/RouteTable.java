@@ -0,0 +1,186 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The shortest paths between every pair of a fixed set of terminals (the depot and the restaurants), precomputed over
+ * a {@link VisibilityGraph}. Dijkstra runs once from every terminal over the static graph, and each other terminal is
+ * then joined to the tree through the static nodes it can see, so the table costs one search per terminal instead of
+ * one per order.
+ * Terminals are numbered in the order they were given, a position given twice keeps its first number. Distances are
+ * kept in a flat row-major matrix, and the waypoints of every pair as node ids in one shared array, so the table is
+ * a few primitive arrays whatever the number of orders.
+ * */
+public final class RouteTable {
+    private final VisibilityGraph visibilityGraph;
+    private final LngLat[] terminals;
+    private final HashMap<LngLat, Integer> terminalIds;
+    // distances[from * terminals + to], +infinity when there is no path
+    private final double[] distances;
+    // the waypoints of a pair are pathNodes[pathOffsets[pair]] to pathNodes[pathOffsets[pair + 1] - 1], ids below
+    // the graph size are static nodes and id size() + t is terminal t
+    private final int[] pathOffsets;
+    private final int[] pathNodes;
+
+    private RouteTable(VisibilityGraph visibilityGraph, List<LngLat> positions) {
+        this.visibilityGraph = visibilityGraph;
+        this.terminalIds = new HashMap<>();
+        ArrayList<LngLat> distinct = new ArrayList<>();
+        for (LngLat position: positions) {
+            if (this.terminalIds.putIfAbsent(position, distinct.size()) == null) {
+                distinct.add(position);
+            }
+        }
+        this.terminals = distinct.toArray(new LngLat[0]);
+        int m = this.terminals.length;
+        CsrGraph graph = visibilityGraph.getCsrGraph();
+        int n = graph.size();
+
+        int[][] visible = new int[m][];
+        for (int t = 0; t < m; t++) {
+            visible[t] = visibilityGraph.visibleFrom(this.terminals[t]);
+        }
+
+        this.distances = new double[m * m];
+        this.pathOffsets = new int[m * m + 1];
+        ArrayList<int[]> paths = new ArrayList<>(m * m);
+        double[] tree = new double[n];
+        int[] parents = new int[n];
+        for (int from = 0; from < m; from++) {
+            LngLat src = this.terminals[from];
+            AStarSearch.shortestPathTree(graph, src, visible[from], tree, parents);
+            for (int to = 0; to < m; to++) {
+                int[] path = (from == to) ? new int[]{n + from} : join(graph, from, to, visible[to], tree, parents);
+                int pair = from * m + to;
+                this.distances[pair] = (path == null) ? Double.POSITIVE_INFINITY : length(graph, path);
+                paths.add((path == null) ? new int[0] : path);
+                this.pathOffsets[pair + 1] = this.pathOffsets[pair] + paths.get(pair).length;
+            }
+        }
+        this.pathNodes = new int[this.pathOffsets[m * m]];
+        for (int pair = 0; pair < m * m; pair++) {
+            System.arraycopy(paths.get(pair), 0, this.pathNodes, this.pathOffsets[pair], paths.get(pair).length);
+        }
+    }
+
+    /**
+     * Builds the table for a depot and a set of restaurant locations.
+     * @param visibilityGraph The static graph for the current obstacles.
+     * @param depot Where every route starts, it is terminal 0.
+     * @param restaurants The restaurant locations, terminals 1 onwards unless a location repeats.
+     * */
+    public static RouteTable build(VisibilityGraph visibilityGraph, LngLat depot, LngLat[] restaurants) {
+        List<LngLat> positions = new ArrayList<>();
+        positions.add(depot);
+        positions.addAll(Arrays.asList(restaurants));
+        return new RouteTable(visibilityGraph, positions);
+    }
+
+    // the last leg into terminal `to`: straight from `from`, or from the static node it sees that is closest to `from`
+    private int[] join(CsrGraph graph, int from, int to, int[] toVisible, double[] tree, int[] parents) {
+        int n = graph.size();
+        LngLat src = this.terminals[from];
+        LngLat dest = this.terminals[to];
+        double best = Double.POSITIVE_INFINITY;
+        int via = -1;
+        if (this.visibilityGraph.isVisible(src, dest)) {
+            best = CsrGraph.distance(src.lng(), src.lat(), dest.lng(), dest.lat());
+        }
+        for (int node: toVisible) {
+            double length = tree[node] + CsrGraph.distance(graph.lng[node], graph.lat[node], dest.lng(), dest.lat());
+            if (length < best) {
+                best = length;
+                via = node;
+            }
+        }
+        if (best == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        // walk back to the tree's root, which is src: either the static node src is on, or the virtual id n
+        int root = graph.idOf(src);
+        int count = 2;
+        for (int node = via; node >= 0 && node < n && node != root; node = parents[node]) {
+            count++;
+        }
+        int[] path = new int[count];
+        path[0] = n + from;
+        path[--count] = n + to;
+        for (int node = via; node >= 0 && node < n && node != root; node = parents[node]) {
+            path[--count] = node;
+        }
+        return path;
+    }
+
+    private double length(CsrGraph graph, int[] path) {
+        double length = 0.0;
+        for (int i = 0; i < path.length - 1; i++) {
+            LngLat a = position(graph, path[i]);
+            LngLat b = position(graph, path[i + 1]);
+            length += CsrGraph.distance(a.lng(), a.lat(), b.lng(), b.lat());
+        }
+        return length;
+    }
+
+    private LngLat position(CsrGraph graph, int id) {
+        return (id < graph.size()) ? graph.nodes[id] : this.terminals[id - graph.size()];
+    }
+
+    /**
+     * @return The number of a terminal, or -1 if the position is not one.
+     * */
+    public int indexOf(LngLat position) {
+        Integer id = this.terminalIds.get(position);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * @return The length of the shortest unobstructed path between two terminals, +infinity if there is none.
+     * */
+    public double distance(int from, int to) {
+        return this.distances[from * this.terminals.length + to];
+    }
+
+    /**
+     * @return The length of the shortest unobstructed path between two positions, or NaN if either is not a terminal.
+     * */
+    public double distance(LngLat from, LngLat to) {
+        int i = indexOf(from);
+        int j = indexOf(to);
+        return (i < 0 || j < 0) ? Double.NaN : distance(i, j);
+    }
+
+    /**
+     * @return The waypoints of the shortest path between two terminals, as {@link DronePathFinder#pathfind()} returns
+     * them, or an empty array if there is no path.
+     * */
+    public LngLat[] waypoints(int from, int to) {
+        CsrGraph graph = this.visibilityGraph.getCsrGraph();
+        int pair = from * this.terminals.length + to;
+        LngLat[] waypoints = new LngLat[this.pathOffsets[pair + 1] - this.pathOffsets[pair]];
+        for (int i = 0; i < waypoints.length; i++) {
+            waypoints[i] = position(graph, this.pathNodes[this.pathOffsets[pair] + i]);
+        }
+        return waypoints;
+    }
+
+    /**
+     * @return The waypoints between two positions, or null if either is not a terminal.
+     * */
+    public LngLat[] waypoints(LngLat from, LngLat to) {
+        int i = indexOf(from);
+        int j = indexOf(to);
+        return (i < 0 || j < 0) ? null : waypoints(i, j);
+    }
+
+    public int size() {
+        return this.terminals.length;
+    }
+    public LngLat getTerminal(int index) {
+        return this.terminals[index];
+    }
+}
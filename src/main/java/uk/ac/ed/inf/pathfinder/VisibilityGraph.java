@@ -7,40 +7,69 @@ import uk.ac.ed.inf.ilp.data.NamedRegion;
 
 import java.awt.geom.Line2D;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
  * The visibility graph is responsible for computing the shortest path from a source node to an end node.
- * Its {@link #constructEdges()} method is O(n^3) time complexity, where n represents the sum of all nodes
- * (2 (source and dest) + centralArea vertices + * all noFlyZone vertices).
+ * The graph is split in two parts. The static part holds the centralArea and noFlyZone vertices and the edges between
+ * them; it only depends on the {@link ZoneSet}, so it is built once and shared through {@link #of(ZoneSet)}.
+ * Its {@link #constructEdges()} method tests the n^2 pairs of static nodes against the nearby no-fly zone edges only,
+ * see {@link VisibilityGraphBuilder}.
+ * The static part is also kept in compressed form ({@link CsrGraph}) for the A* search. The source and dest of a
+ * query are spliced in afterwards by testing them against every static node with {@link #visibleFrom(LngLat)}.
+ * A second graph on the same nodes also joins the vertices of each zone along and around it, so that its shortest
+ * paths are lower bounds on any flight around the zones, for {@link LatticePlanner}.
  * */
 public class VisibilityGraph {
+    // the static graph of the most recent obstacles only, so a long running process that sees the zones change does
+    // not keep the graphs of every earlier zone set
+    private static final AtomicReference<VisibilityGraph> LATEST = new AtomicReference<>();
+
     ArrayList<LngLat> nodes;
     // adjacency list representation
     HashMap<LngLat, ArrayList<LngLat>> edgeSet;
-    private Context context;
+    // the same graph with int node ids, for AStarSearch
+    private final CsrGraph csrGraph;
+    // the same nodes joined by VisibilityGraphBuilder.buildAround, for LatticePlanner
+    private final CsrGraph aroundGraph;
+    private final ZoneSet zoneSet;
 
     /**
-     * Context is passed in so that {@link #constructNodes()} and {@link #constructEdges()} can get the information
-     * they need.
+     * The zone set is passed in so that {@link #constructNodes()} and {@link #constructEdges()} can get the
+     * information they need. Prefer {@link #of(ZoneSet)}, which reuses a previously built graph.
      * */
-    public VisibilityGraph(Context context) {
-        // fill nodes with source, centralArea and noFlyZone vertices
-        this.context = context;
+    public VisibilityGraph(ZoneSet zoneSet) {
+        // fill nodes with centralArea and noFlyZone vertices
+        this.zoneSet = zoneSet;
         constructNodes();
         constructEdges();
+        this.csrGraph = CsrGraph.of(this.nodes, this.edgeSet);
+        this.aroundGraph = CsrGraph.of(this.nodes, VisibilityGraphBuilder.buildAround(this.nodes, zoneSet.getZoneGrid()));
+    }
+
+    /**
+     * @return The static visibility graph for the given obstacles, building it only if the last graph built was for
+     * a different {@link ZoneSet}.
+     * */
+    public static VisibilityGraph of(ZoneSet zoneSet) {
+        VisibilityGraph latest = LATEST.get();
+        if (latest != null && latest.zoneSet.equals(zoneSet)) {
+            return latest;
+        }
+        VisibilityGraph graph = new VisibilityGraph(zoneSet);
+        LATEST.set(graph);
+        return graph;
     }
 
     /**
      * This function is responsible for initialising a list of nodes then filling it with all the relevant polygonal
-     * data. These are the nodes of the visibility graph.
+     * data. These are the static nodes of the visibility graph.
      * */
     private void constructNodes() {
         this.nodes = new ArrayList<>();
-        this.nodes.add(this.context.getSrc());
-        this.nodes.add(this.context.getDest());
-        this.nodes.addAll(List.of(this.context.getCentralArea().vertices()));
-        for (NamedRegion zone: this.context.getNoFlyZones()) {
+        this.nodes.addAll(List.of(this.zoneSet.getCentralArea().vertices()));
+        for (NamedRegion zone: this.zoneSet.getNoFlyZones()) {
             this.nodes.addAll(List.of(zone.vertices()));
         }
     }
@@ -48,58 +77,74 @@ public class VisibilityGraph {
     /**
      * For every pair-wise combination of nodes, check if the line segment they form is not obstructed by any
      * {@link Context#getNoFlyZones() no-fly zone}. If not obstructed then add to the {@link #edgeSet},
-     * otherwise do not add. O(n^3) time complexity where n is the number of {@link #nodes}.
+     * otherwise do not add. The pairs are tested by {@link VisibilityGraphBuilder}, which only checks the zone edges
+     * near each pair.
      * */
     private void constructEdges() {
-        this.edgeSet = new HashMap<>();
-        // construct edges
-        for (int i = 0; i < this.nodes.size() - 1; i ++) {
-            for (int j = i + 1; j < nodes.size(); j++) {
-                // test for visibility with distinct pairwise combination of nodes
-                if (hasVisibility(nodes.get(i), nodes.get(j))) {
-                    if (!edgeSet.containsKey(nodes.get(i))) {
-                        edgeSet.put(nodes.get(i), new ArrayList<>());
-                    }
-                    if (!edgeSet.containsKey(nodes.get(j))) {
-                        edgeSet.put(nodes.get(j), new ArrayList<>());
-                    }
-                    edgeSet.get(nodes.get(i)).add(nodes.get(j));
-                    edgeSet.get(nodes.get(j)).add(nodes.get(i));
-                }
+        this.edgeSet = VisibilityGraphBuilder.build(this.nodes, this.zoneSet.getZoneGrid());
+    }
+
+    /**
+     * Connects a query endpoint to the static graph without modifying it, so the graph can be shared between
+     * queries: every static node visible from the endpoint gets an edge to it for that query.
+     * @return The ids in {@link #getCsrGraph()} of the static nodes visible from the endpoint.
+     * */
+    int[] visibleFrom(LngLat endpoint) {
+        ZoneGrid zoneGrid = this.zoneSet.getZoneGrid();
+        int[] endpointZones = zoneGrid.zonesOf(endpoint);
+        int[] visible = new int[this.csrGraph.size()];
+        int count = 0;
+        for (int i = 0; i < this.csrGraph.size(); i++) {
+            LngLat node = this.csrGraph.nodes[i];
+            // hasVisibility on the primitive coordinates of the node
+            if (!ZoneGrid.shareZone(endpointZones, zoneGrid.zonesOf(node))
+                    && !zoneGrid.crossesEdge(endpoint.lng(), endpoint.lat(), this.csrGraph.lng[i], this.csrGraph.lat[i])) {
+                visible[count++] = i;
             }
         }
+        return Arrays.copyOf(visible, count);
     }
 
-    /** O(n) time complexity where n refers to the number of {@link Context#getNoFlyZones() no-fly zone} vertices.
-     * Utilises Java's {@link Line2D} library to calculate intersection cleanly. Checking whether
-     * 2 segments intersect is a constant time procedure.
-     * @return False if the line segment defined by p and q intersects with at least one
-     * {@link Context#getNoFlyZones() no-fly zone} segment.
+    /**
+     * @return True if the line segment from p to q is not obstructed by any no-fly zone.
+     * */
+    boolean isVisible(LngLat p, LngLat q) {
+        return hasVisibility(p, q);
+    }
+
+    CsrGraph getCsrGraph() {
+        return this.csrGraph;
+    }
+
+    /**
+     * @return The static nodes joined wherever a flight could go straight from one to the other along or outside the
+     * zones, see {@link VisibilityGraphBuilder#buildAround(List, ZoneGrid)}.
+     * */
+    CsrGraph getAroundGraph() {
+        return this.aroundGraph;
+    }
+
+    /**
+     * @return The static neighbours of a node, or an empty list if the node is not a static node.
+     * */
+    public List<LngLat> getNeighbours(LngLat node) {
+        return this.edgeSet.getOrDefault(node, new ArrayList<>());
+    }
+
+    public ZoneSet getZoneSet() {
+        return this.zoneSet;
+    }
+
+    /** Uses the {@link ZoneGrid} of the zone set, so only the no-fly zone edges near the segment are tested. Each
+     * test is Java's {@link Line2D#linesIntersect}, which is a constant time procedure.
+     * @return False if p and q are vertices of the same {@link Context#getNoFlyZones() no-fly zone}, or if the line
+     * segment defined by p and q intersects with at least one {@link Context#getNoFlyZones() no-fly zone} segment.
      * True if the line segment defined by p and q does not intersect with any
      * {@link Context#getNoFlyZones() no-fly zone} segment.
      * */
     private boolean hasVisibility(LngLat p, LngLat q) {
-        for (NamedRegion zone : this.context.getNoFlyZones())  {
-            for (int i = 0; i < zone.vertices().length - 1; i++) {
-                // if both points lie on the same polygon then return false
-                if (List.of(zone.vertices()).contains(p) && (List.of(zone.vertices()).contains(q))) {
-                    return false;
-                }
-
-                LngLat r = zone.vertices()[i];
-                LngLat s = zone.vertices()[i+1];
-                Line2D pq = new Line2D.Double(p.lng(), p.lat(), q.lng(), q.lat());
-                Line2D rs = new Line2D.Double(r.lng(), r.lat(), s.lng(), s.lat());
-                if (pq.intersectsLine(rs)) {
-                    // ignore intersections that are just p = (r or s) or q = (r or s)
-                    boolean eqP = r.equals(p) || s.equals(p);
-                    boolean eqQ = r.equals(q) || s.equals(q);
-                    if (!(eqP || eqQ)) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        ZoneGrid zoneGrid = this.zoneSet.getZoneGrid();
+        // if both points lie on the same polygon then return false
+        return !zoneGrid.onSameZone(p, q) && !zoneGrid.crossesEdge(p, q);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the edges of the static {@link VisibilityGraph}. Node coordinates and the no-fly zones each node is a vertex
+ * of are copied into primitive arrays once, and every pair of nodes is tested with the segment queries of the
+ * {@link ZoneGrid}, which only look at the zone edges near the pair. Each node's pairs are independent, so the rows
+ * are tested in parallel on the common fork-join pool, and then joined in the same order as the old pairwise loop,
+ * so every adjacency list comes out exactly as before.
+ * */
+final class VisibilityGraphBuilder {
+    private final double[] lng;
+    private final double[] lat;
+    private final int[][] zones;
+    private final ZoneGrid zoneGrid;
+    // join vertices of the same zone along and around it, see buildAround
+    private final boolean around;
+
+    private VisibilityGraphBuilder(List<LngLat> nodes, ZoneGrid zoneGrid, boolean around) {
+        int n = nodes.size();
+        this.lng = new double[n];
+        this.lat = new double[n];
+        this.zones = new int[n][];
+        this.zoneGrid = zoneGrid;
+        this.around = around;
+        for (int i = 0; i < n; i++) {
+            LngLat node = nodes.get(i);
+            this.lng[i] = node.lng();
+            this.lat[i] = node.lat();
+            this.zones[i] = zoneGrid.zonesOf(node);
+        }
+    }
+
+    /**
+     * @param nodes The static nodes, in the order of {@link VisibilityGraph#nodes}.
+     * @param zoneGrid The grid of the zone set the nodes come from.
+     * @return The adjacency list of every node, as {@link VisibilityGraph#edgeSet}.
+     * */
+    static HashMap<LngLat, ArrayList<LngLat>> build(List<LngLat> nodes, ZoneGrid zoneGrid) {
+        return new VisibilityGraphBuilder(nodes, zoneGrid, false).edges(nodes);
+    }
+
+    /**
+     * Builds the edges of a graph whose shortest paths are never longer than the shortest way around the no-fly
+     * zones, for the heuristic of {@link LatticePlanner}. The routing graph never joins two vertices of the same zone,
+     * so it cannot go round a zone on its own; this one joins them too when they are the ends of a zone edge or see
+     * each other outside the zone, see {@link ZoneGrid#seesAround}.
+     * @return The adjacency list of every node, in the same form as {@link #build(List, ZoneGrid)}.
+     * */
+    static HashMap<LngLat, ArrayList<LngLat>> buildAround(List<LngLat> nodes, ZoneGrid zoneGrid) {
+        return new VisibilityGraphBuilder(nodes, zoneGrid, true).edges(nodes);
+    }
+
+    private HashMap<LngLat, ArrayList<LngLat>> edges(List<LngLat> nodes) {
+        int n = nodes.size();
+
+        // visible[i] has bit (j - i - 1) set when node i can see node j > i
+        long[][] visible = new long[n][];
+        IntStream.range(0, n).parallel().forEach(i -> visible[i] = row(i));
+
+        HashMap<LngLat, ArrayList<LngLat>> edgeSet = new HashMap<>();
+        for (LngLat node: nodes) {
+            edgeSet.putIfAbsent(node, new ArrayList<>());
+        }
+        for (int i = 0; i < n - 1; i++) {
+            long[] row = visible[i];
+            for (int j = i + 1; j < n; j++) {
+                int bit = j - i - 1;
+                if ((row[bit >>> 6] & (1L << bit)) != 0) {
+                    edgeSet.get(nodes.get(i)).add(nodes.get(j));
+                    edgeSet.get(nodes.get(j)).add(nodes.get(i));
+                }
+            }
+        }
+        return edgeSet;
+    }
+
+    private long[] row(int i) {
+        int n = this.lng.length;
+        long[] row = new long[Math.max(n - i - 1 + 63, 0) / 64];
+        for (int j = i + 1; j < n; j++) {
+            if (isVisible(i, j)) {
+                int bit = j - i - 1;
+                row[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return row;
+    }
+
+    // VisibilityGraph.hasVisibility on node indices
+    private boolean isVisible(int i, int j) {
+        if (this.around) {
+            return this.zoneGrid.seesAround(this.lng[i], this.lat[i], this.zones[i], this.lng[j], this.lat[j], this.zones[j]);
+        }
+        if (ZoneGrid.shareZone(this.zones[i], this.zones[j])) {
+            return false;
+        }
+        return !this.zoneGrid.crossesEdge(this.lng[i], this.lat[i], this.lng[j], this.lat[j]);
+    }
+}
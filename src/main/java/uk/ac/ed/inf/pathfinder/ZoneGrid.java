@@ -0,0 +1,410 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Uniform grid over the no-fly zones of a {@link ZoneSet}, so that point and segment queries only look at the zones
+ * and edges near them instead of every edge of every zone. Each cell lists the zone edges whose bounding box overlaps
+ * it, and the zones whose bounding box overlaps it. The grid has roughly one cell per edge, so the work per query
+ * stays about the same however many zones there are.
+ * Queries give exactly the same answers as a scan over every zone: candidates are chosen conservatively and then
+ * tested with the same arithmetic as before.
+ * Besides the visibility test, which has always ignored the edge from a zone's last vertex back to its first, the grid
+ * answers whether a single drone move touches a zone at all with {@link #crossesZone(LngLat, LngLat)}, which tests
+ * every edge of the closed polygons.
+ * */
+public final class ZoneGrid {
+    // values per edge in the edges array: lng and lat of both ends
+    private static final int STRIDE = 4;
+    // kept around bounding boxes and segments, much more than rounding can move an intersection
+    private static final double MARGIN = 1e-9;
+
+    private final PreparedRegion[] zones;
+    // edges between consecutive vertices of each no-fly zone, as hasVisibility always checked them, followed by the
+    // edges that close each zone, which only crossesZone checks
+    private final double[] edges;
+    private final int visibilityEdges;
+    // the zones every vertex belongs to, for the same-zone check
+    private final HashMap<LngLat, int[]> vertexZones;
+
+    // grid geometry
+    private final double minLng;
+    private final double minLat;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    // compressed cell lists: the entries of cell c are cellX[cellXStart[c]] to cellX[cellXStart[c + 1] - 1]
+    private final int[] cellEdgeStart;
+    private final int[] cellEdges;
+    private final int[] cellZoneStart;
+    private final int[] cellZones;
+
+    ZoneGrid(NamedRegion[] noFlyZones, PreparedRegion[] preparedNoFlyZones) {
+        this.zones = preparedNoFlyZones;
+
+        // collect the edges and the bounding box of everything
+        int openEdges = 0;
+        int edgeCount = 0;
+        for (NamedRegion zone: noFlyZones) {
+            openEdges += Math.max(zone.vertices().length - 1, 0);
+            edgeCount += Math.max(zone.vertices().length - 1, 0) + (isOpen(zone.vertices()) ? 1 : 0);
+        }
+        this.visibilityEdges = openEdges;
+        this.edges = new double[edgeCount * STRIDE];
+        this.vertexZones = new HashMap<>();
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        int e = 0;
+        for (int z = 0; z < noFlyZones.length; z++) {
+            LngLat[] vertices = noFlyZones[z].vertices();
+            for (int i = 0; i < vertices.length; i++) {
+                minLng = Math.min(minLng, vertices[i].lng());
+                maxLng = Math.max(maxLng, vertices[i].lng());
+                minLat = Math.min(minLat, vertices[i].lat());
+                maxLat = Math.max(maxLat, vertices[i].lat());
+                if (i < vertices.length - 1) {
+                    this.edges[e++] = vertices[i].lng();
+                    this.edges[e++] = vertices[i].lat();
+                    this.edges[e++] = vertices[i + 1].lng();
+                    this.edges[e++] = vertices[i + 1].lat();
+                }
+                // zones of a single vertex never had an edge, so they never blocked anything
+                if (vertices.length > 1) {
+                    addZone(vertices[i], z);
+                }
+            }
+        }
+        int c = openEdges * STRIDE;
+        for (NamedRegion zone: noFlyZones) {
+            LngLat[] vertices = zone.vertices();
+            if (isOpen(vertices)) {
+                this.edges[c++] = vertices[vertices.length - 1].lng();
+                this.edges[c++] = vertices[vertices.length - 1].lat();
+                this.edges[c++] = vertices[0].lng();
+                this.edges[c++] = vertices[0].lat();
+            }
+        }
+
+        // no vertices at all
+        if (minLng > maxLng) {
+            minLng = maxLng = minLat = maxLat = 0.0;
+        }
+        this.minLng = minLng - MARGIN;
+        this.minLat = minLat - MARGIN;
+        double width = (maxLng + MARGIN) - this.minLng;
+        double height = (maxLat + MARGIN) - this.minLat;
+        // about one cell per edge, as square as the bounding box allows
+        int cells = Math.max(edgeCount, 1);
+        this.columns = Math.max(1, Math.min(cells, (int) Math.round(Math.sqrt(cells * width / height))));
+        this.rows = Math.max(1, Math.min(cells, (int) Math.ceil((double) cells / this.columns)));
+        this.cellWidth = width / this.columns;
+        this.cellHeight = height / this.rows;
+
+        // edges go into every cell their bounding box overlaps
+        int[][] edgeCells = new int[edgeCount][];
+        for (int i = 0; i < edgeCount; i++) {
+            int b = i * STRIDE;
+            edgeCells[i] = cellRange(Math.min(this.edges[b], this.edges[b + 2]), Math.max(this.edges[b], this.edges[b + 2]),
+                    Math.min(this.edges[b + 1], this.edges[b + 3]), Math.max(this.edges[b + 1], this.edges[b + 3]));
+        }
+        this.cellEdgeStart = new int[this.columns * this.rows + 1];
+        this.cellEdges = fill(edgeCells, this.cellEdgeStart);
+
+        // zones go into every cell their bounding box overlaps
+        int[][] zoneCells = new int[noFlyZones.length][];
+        for (int z = 0; z < noFlyZones.length; z++) {
+            double zoneMinLng = Double.POSITIVE_INFINITY;
+            double zoneMaxLng = Double.NEGATIVE_INFINITY;
+            double zoneMinLat = Double.POSITIVE_INFINITY;
+            double zoneMaxLat = Double.NEGATIVE_INFINITY;
+            for (LngLat vertex: noFlyZones[z].vertices()) {
+                zoneMinLng = Math.min(zoneMinLng, vertex.lng());
+                zoneMaxLng = Math.max(zoneMaxLng, vertex.lng());
+                zoneMinLat = Math.min(zoneMinLat, vertex.lat());
+                zoneMaxLat = Math.max(zoneMaxLat, vertex.lat());
+            }
+            zoneCells[z] = (noFlyZones[z].vertices().length == 0) ? new int[0]
+                    : cellRange(zoneMinLng, zoneMaxLng, zoneMinLat, zoneMaxLat);
+        }
+        this.cellZoneStart = new int[this.columns * this.rows + 1];
+        this.cellZones = fill(zoneCells, this.cellZoneStart);
+    }
+
+    // true if the polygon needs an edge from its last vertex back to its first
+    private static boolean isOpen(LngLat[] vertices) {
+        return vertices.length > 2 && !vertices[0].equals(vertices[vertices.length - 1]);
+    }
+
+    private void addZone(LngLat vertex, int zone) {
+        int[] known = this.vertexZones.get(vertex);
+        if (known == null) {
+            this.vertexZones.put(vertex, new int[]{zone});
+        }
+        else if (known[known.length - 1] != zone) {
+            int[] grown = Arrays.copyOf(known, known.length + 1);
+            grown[known.length] = zone;
+            this.vertexZones.put(vertex, grown);
+        }
+    }
+
+    // the column of a lng, clamped to the grid. Never decreases as lng increases, so a range of lngs maps onto a
+    // range of columns exactly
+    private int column(double lng) {
+        int column = (int) Math.floor((lng - this.minLng) / this.cellWidth);
+        return Math.max(0, Math.min(this.columns - 1, column));
+    }
+
+    private int row(double lat) {
+        int row = (int) Math.floor((lat - this.minLat) / this.cellHeight);
+        return Math.max(0, Math.min(this.rows - 1, row));
+    }
+
+    // every cell overlapping the box, widened by the margin
+    private int[] cellRange(double minLng, double maxLng, double minLat, double maxLat) {
+        int c0 = column(minLng - MARGIN);
+        int c1 = column(maxLng + MARGIN);
+        int r0 = row(minLat - MARGIN);
+        int r1 = row(maxLat + MARGIN);
+        int[] cells = new int[(c1 - c0 + 1) * (r1 - r0 + 1)];
+        int n = 0;
+        for (int c = c0; c <= c1; c++) {
+            for (int r = r0; r <= r1; r++) {
+                cells[n++] = c * this.rows + r;
+            }
+        }
+        return cells;
+    }
+
+    // turns the cells of every item into compressed per-cell item lists
+    private static int[] fill(int[][] itemCells, int[] start) {
+        for (int[] cells: itemCells) {
+            for (int cell: cells) {
+                start[cell + 1]++;
+            }
+        }
+        for (int c = 0; c < start.length - 1; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] items = new int[start[start.length - 1]];
+        int[] next = start.clone();
+        for (int item = 0; item < itemCells.length; item++) {
+            for (int cell: itemCells[item]) {
+                items[next[cell]++] = item;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Same answer as {@link PreparedRegion#isInAny(PreparedRegion[], LngLat)} over every no-fly zone, but only the
+     * zones whose bounding box overlaps the point's cell are tested.
+     * @return True if the position is in any no-fly zone.
+     * */
+    public boolean isInAny(LngLat position) {
+        return isInAny(position.lng(), position.lat());
+    }
+
+    /**
+     * Same as {@link #isInAny(LngLat)}, for coordinates held in primitives.
+     * */
+    boolean isInAny(double lng, double lat) {
+        int cell = column(lng) * this.rows + row(lat);
+        for (int i = this.cellZoneStart[cell]; i < this.cellZoneStart[cell + 1]; i++) {
+            if (this.zones[this.cellZones[i]].contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if p and q are both vertices of the same no-fly zone.
+     * */
+    public boolean onSameZone(LngLat p, LngLat q) {
+        return shareZone(this.vertexZones.get(p), this.vertexZones.get(q));
+    }
+
+    /**
+     * @return The ids of the no-fly zones the position is a vertex of, or null if it is not a vertex.
+     * */
+    int[] zonesOf(LngLat position) {
+        return this.vertexZones.get(position);
+    }
+
+    /**
+     * @return True if the two lists from {@link #zonesOf(LngLat)} have a zone in common.
+     * */
+    static boolean shareZone(int[] pZones, int[] qZones) {
+        if (pZones == null || qZones == null) {
+            return false;
+        }
+        for (int a: pZones) {
+            for (int b: qZones) {
+                if (a == b) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A looser {@link #crossesEdge(LngLat, LngLat)} for lower bounds on the length of a flight, which may run along the
+     * zones rather than strictly outside them. Unlike hasVisibility it joins two vertices of the same no-fly zone
+     * when they are the ends of one of its edges, or when the chord between them crosses no edge and its midpoint is
+     * outside every zone: a chord that crosses no edge is either inside the zone or outside it all the way.
+     * @param pZones The zones p is a vertex of, as {@link #zonesOf(LngLat)}.
+     * @param qZones The zones q is a vertex of.
+     * @return True if a path from p to q can go straight without passing through a no-fly zone.
+     * */
+    boolean seesAround(double px, double py, int[] pZones, double qx, double qy, int[] qZones) {
+        if (shareZone(pZones, qZones) && !isZoneEdge(px, py, qx, qy) && isInAny((px + qx) / 2, (py + qy) / 2)) {
+            return false;
+        }
+        return !crossesEdge(px, py, qx, qy);
+    }
+
+    // true if pq is an edge of a zone, closing edges included. Such an edge overlaps the cell of p
+    private boolean isZoneEdge(double px, double py, double qx, double qy) {
+        int cell = column(px) * this.rows + row(py);
+        for (int i = this.cellEdgeStart[cell]; i < this.cellEdgeStart[cell + 1]; i++) {
+            int b = this.cellEdges[i] * STRIDE;
+            double rx = this.edges[b];
+            double ry = this.edges[b + 1];
+            double sx = this.edges[b + 2];
+            double sy = this.edges[b + 3];
+            if ((same(rx, ry, px, py) && same(sx, sy, qx, qy)) || (same(rx, ry, qx, qy) && same(sx, sy, px, py))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the segment pq against the edges in the cells it passes through. Edges are tested with
+     * {@link Line2D#linesIntersect}, and an intersection does not count if p or q is an end of the edge.
+     * @return True if pq crosses or touches a no-fly zone edge other than at its own ends.
+     * */
+    public boolean crossesEdge(LngLat p, LngLat q) {
+        return crossesEdge(p.lng(), p.lat(), q.lng(), q.lat());
+    }
+
+    /**
+     * Same as {@link #crossesEdge(LngLat, LngLat)}, for coordinates held in primitive arrays.
+     * */
+    boolean crossesEdge(double px, double py, double qx, double qy) {
+        return walk(px, py, qx, qy, false);
+    }
+
+    /**
+     * Checks a drone move against every edge of the closed no-fly zones in the cells it passes through, including the
+     * edge from each zone's last vertex back to its first. Touching an edge counts, and so does running along one.
+     * A move that crosses no edge and ends outside every zone stays outside them all the way, so together with
+     * {@link #isInAny(LngLat)} on the end of the move this is the exact test for a move.
+     * @return True if the segment pq touches the boundary of any no-fly zone.
+     * */
+    public boolean crossesZone(LngLat p, LngLat q) {
+        return crossesZone(p.lng(), p.lat(), q.lng(), q.lat());
+    }
+
+    /**
+     * Same as {@link #crossesZone(LngLat, LngLat)}, for coordinates held in primitive arrays.
+     * */
+    boolean crossesZone(double px, double py, double qx, double qy) {
+        return walk(px, py, qx, qy, true);
+    }
+
+    // visits the cells the segment passes through, one column at a time, testing the edges listed in each
+    private boolean walk(double px, double py, double qx, double qy, boolean closed) {
+        if (this.edges.length == 0) {
+            return false;
+        }
+        double segmentMinLat = Math.min(py, qy) - MARGIN;
+        double segmentMaxLat = Math.max(py, qy) + MARGIN;
+        int c0 = column(Math.min(px, qx) - MARGIN);
+        int c1 = column(Math.max(px, qx) + MARGIN);
+        for (int c = c0; c <= c1; c++) {
+            // the lats the segment covers inside this column, widened by the margin
+            int r0;
+            int r1;
+            if (c0 == c1 || px == qx) {
+                r0 = row(segmentMinLat);
+                r1 = row(segmentMaxLat);
+            }
+            else {
+                // widened, so that rounding in column() cannot put part of the segment outside these lngs
+                double left = this.minLng + c * this.cellWidth - MARGIN;
+                double right = left + this.cellWidth + 2 * MARGIN;
+                double slope = (qy - py) / (qx - px);
+                double leftLat = py + (left - px) * slope;
+                double rightLat = py + (right - px) * slope;
+                r0 = row(Math.max(segmentMinLat, Math.min(leftLat, rightLat) - MARGIN));
+                r1 = row(Math.min(segmentMaxLat, Math.max(leftLat, rightLat) + MARGIN));
+            }
+            for (int r = r0; r <= r1; r++) {
+                int cell = c * this.rows + r;
+                for (int i = this.cellEdgeStart[cell]; i < this.cellEdgeStart[cell + 1]; i++) {
+                    int edge = this.cellEdges[i];
+                    if (closed ? touches(edge, px, py, qx, qy)
+                            : edge < this.visibilityEdges && blocks(edge, px, py, qx, qy)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean blocks(int edge, double px, double py, double qx, double qy) {
+        int b = edge * STRIDE;
+        double rx = this.edges[b];
+        double ry = this.edges[b + 1];
+        double sx = this.edges[b + 2];
+        double sy = this.edges[b + 3];
+        if (!Line2D.linesIntersect(px, py, qx, qy, rx, ry, sx, sy)) {
+            return false;
+        }
+        // ignore intersections that are just p = (r or s) or q = (r or s)
+        return !(same(rx, ry, px, py) || same(sx, sy, px, py) || same(rx, ry, qx, qy) || same(sx, sy, qx, qy));
+    }
+
+    // inclusive segment intersection on primitives: a bounding box check, then the four orientation tests
+    private boolean touches(int edge, double px, double py, double qx, double qy) {
+        int b = edge * STRIDE;
+        double rx = this.edges[b];
+        double ry = this.edges[b + 1];
+        double sx = this.edges[b + 2];
+        double sy = this.edges[b + 3];
+        if (Math.max(px, qx) < Math.min(rx, sx) || Math.max(rx, sx) < Math.min(px, qx)
+                || Math.max(py, qy) < Math.min(ry, sy) || Math.max(ry, sy) < Math.min(py, qy)) {
+            return false;
+        }
+        double d1 = orientation(px, py, qx, qy, rx, ry);
+        double d2 = orientation(px, py, qx, qy, sx, sy);
+        if ((d1 > 0 && d2 > 0) || (d1 < 0 && d2 < 0)) {
+            return false;
+        }
+        double d3 = orientation(rx, ry, sx, sy, px, py);
+        double d4 = orientation(rx, ry, sx, sy, qx, qy);
+        // when all four are zero the segments are collinear, and the boxes overlap, so they overlap too
+        return !((d3 > 0 && d4 > 0) || (d3 < 0 && d4 < 0));
+    }
+
+    // the sign says which side of ab c is on, zero when it is on the line
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    // LngLat.equals compares its components as Double.compare does
+    private static boolean same(double ax, double ay, double bx, double by) {
+        return Double.compare(ax, bx) == 0 && Double.compare(ay, by) == 0;
+    }
+}
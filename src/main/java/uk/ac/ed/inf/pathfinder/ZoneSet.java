@@ -0,0 +1,156 @@
+package uk.ac.ed.inf.pathfinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the obstacles a drone has to route around: the central area and the no-fly zones.
+ * Two zone sets are equal when their content (names and vertices) is equal, so a zone set can be used as a key for
+ * anything that is derived from the obstacles alone, such as the static {@link VisibilityGraph}.
+ * */
+public final class ZoneSet {
+    private final NamedRegion centralArea;
+    private final NamedRegion[] noFlyZones;
+    // the same regions prepared for point-in-region tests, not part of equality
+    private final PreparedRegion preparedCentralArea;
+    private final PreparedRegion[] preparedNoFlyZones;
+    // spatial index over the no-fly zones
+    private final ZoneGrid zoneGrid;
+    // answers most no-fly lookups without the grid, null when disabled
+    private final OccupancyRaster occupancyRaster;
+    // content hash over every name and vertex, computed once
+    private final long contentHash;
+
+    public ZoneSet(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this.centralArea = centralArea;
+        this.noFlyZones = noFlyZones.clone();
+        long hash = hashRegion(0xcbf29ce484222325L, centralArea);
+        for (NamedRegion zone: this.noFlyZones) {
+            hash = hashRegion(hash, zone);
+        }
+        this.contentHash = hash;
+        this.preparedCentralArea = PreparedRegion.of(centralArea);
+        this.preparedNoFlyZones = PreparedRegion.of(this.noFlyZones);
+        this.zoneGrid = new ZoneGrid(this.noFlyZones, this.preparedNoFlyZones);
+        this.occupancyRaster = OccupancyRaster.fromSystemProperties(centralArea, this.noFlyZones, this.zoneGrid);
+    }
+
+    // FNV-1a style mixing of a region's name and coordinates into the running hash
+    private static long hashRegion(long hash, NamedRegion region) {
+        hash = mix(hash, region.name() == null ? 0 : region.name().hashCode());
+        for (LngLat vertex: region.vertices()) {
+            hash = mix(hash, Double.doubleToLongBits(vertex.lng()));
+            hash = mix(hash, Double.doubleToLongBits(vertex.lat()));
+        }
+        // separate regions so that moving a vertex from one region to the next changes the hash
+        return mix(hash, region.vertices().length);
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    //------------------------------------------------------------------
+    // Getters
+    public NamedRegion getCentralArea() {
+        return this.centralArea;
+    }
+    public NamedRegion[] getNoFlyZones() {
+        return this.noFlyZones;
+    }
+    public PreparedRegion getPreparedCentralArea() {
+        return this.preparedCentralArea;
+    }
+    public PreparedRegion[] getPreparedNoFlyZones() {
+        return this.preparedNoFlyZones;
+    }
+    public ZoneGrid getZoneGrid() {
+        return this.zoneGrid;
+    }
+    public OccupancyRaster getOccupancyRaster() {
+        return this.occupancyRaster;
+    }
+
+    /**
+     * @return True if the position is in any no-fly zone. Uses the {@link OccupancyRaster} when it is enabled, and
+     * the {@link ZoneGrid} otherwise, both give the same answer.
+     */
+    public boolean isInNoFlyZone(LngLat position) {
+        if (this.occupancyRaster != null) {
+            return this.occupancyRaster.isInAny(position);
+        }
+        return this.zoneGrid.isInAny(position);
+    }
+
+    /**
+     * @return True if the position is in the central area.
+     * */
+    public boolean isInCentralArea(LngLat position) {
+        return this.preparedCentralArea.contains(position);
+    }
+
+    /**
+     * Checks one move of an outbound flight. The move may not touch a no-fly zone anywhere along it, not just at its
+     * end, and may not enter the central area from outside. Routes are planned outbound and flown back in reverse, so
+     * the second rule is the rule that a drone carrying an order may not leave the central area once it is inside.
+     * Most moves are answered by the {@link OccupancyRaster} alone, the rest by the {@link ZoneGrid}.
+     * @return True if the drone may move from from to to.
+     * */
+    public boolean isStepAllowed(LngLat from, LngLat to) {
+        return isStepAllowed(from.lng(), from.lat(), to.lng(), to.lat());
+    }
+
+    /**
+     * Same as {@link #isStepAllowed(LngLat, LngLat)}, for positions held in primitives.
+     * */
+    public boolean isStepAllowed(double fromLng, double fromLat, double toLng, double toLat) {
+        if (!this.preparedCentralArea.contains(fromLng, fromLat) && this.preparedCentralArea.contains(toLng, toLat)) {
+            return false;
+        }
+        if (this.occupancyRaster != null && this.occupancyRaster.isClear(fromLng, fromLat, toLng, toLat)) {
+            return true;
+        }
+        return !this.zoneGrid.isInAny(toLng, toLat) && !this.zoneGrid.crossesZone(fromLng, fromLat, toLng, toLat);
+    }
+
+    /**
+     * @return A 64-bit hash of the central area and no-fly zone content. Changes whenever any name or vertex changes.
+     */
+    public long getContentHash() {
+        return this.contentHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ZoneSet other) || other.contentHash != this.contentHash) {
+            return false;
+        }
+        if (!sameRegion(this.centralArea, other.centralArea) || this.noFlyZones.length != other.noFlyZones.length) {
+            return false;
+        }
+        for (int i = 0; i < this.noFlyZones.length; i++) {
+            if (!sameRegion(this.noFlyZones[i], other.noFlyZones[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // NamedRegion is a record holding an array, so its own equals() compares the array by reference
+    private static boolean sameRegion(NamedRegion a, NamedRegion b) {
+        return Objects.equals(a.name(), b.name()) && Arrays.equals(a.vertices(), b.vertices());
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.contentHash);
+    }
+}
@@ -0,0 +1,108 @@
+package uk.ac.ed.inf.serializers;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes one JSON array to a file, a record at a time, so the records never have to be held in memory together.
+ * The file is only created when the first record is written, so nothing is written for an empty array. The bytes are
+ * the same as those of {@link ObjectMapper#writeValueAsString(Object)} on a list of the records.
+ * */
+class JsonArrayWriter {
+    // records are flushed with the generator's buffer, not one by one
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private final String path;
+    // written before the array, for arrays nested in an object
+    private final String typeName;
+    private final String arrayName;
+    private JsonGenerator generator;
+    // set once writing has failed, so the error is reported once
+    private boolean failed;
+
+    /**
+     * @param path The file to write the top level array to.
+     * */
+    JsonArrayWriter(String path) {
+        this(path, null, null);
+    }
+
+    /**
+     * Writes the array as a field of an object instead, as in {"type":typeName,arrayName:[...]}.
+     * */
+    JsonArrayWriter(String path, String typeName, String arrayName) {
+        this.path = path;
+        this.typeName = typeName;
+        this.arrayName = arrayName;
+    }
+
+    void write(Object record) {
+        if (this.failed) {
+            return;
+        }
+        try {
+            if (this.generator == null) {
+                open();
+            }
+            OBJECT_MAPPER.writeValue(this.generator, record);
+        }
+        catch (IOException e) {
+            fail();
+        }
+    }
+
+    private void open() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(this.path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.generator = OBJECT_MAPPER.getFactory().createGenerator(Channels.newOutputStream(channel), JsonEncoding.UTF8);
+        if (this.arrayName != null) {
+            this.generator.writeStartObject();
+            this.generator.writeStringField("type", this.typeName);
+            this.generator.writeArrayFieldStart(this.arrayName);
+        }
+        else {
+            this.generator.writeStartArray();
+        }
+    }
+
+    /**
+     * Ends the array and closes the file, if any record was written.
+     * */
+    void close() {
+        if (this.generator == null || this.failed) {
+            return;
+        }
+        try {
+            this.generator.writeEndArray();
+            if (this.arrayName != null) {
+                this.generator.writeEndObject();
+            }
+            this.generator.close();
+        }
+        catch (IOException e) {
+            fail();
+        }
+    }
+
+    private void fail() {
+        this.failed = true;
+        System.err.println("Error writing to: " + this.path + ". Program terminating...");
+        if (this.generator != null) {
+            try {
+                this.generator.close();
+            }
+            catch (IOException ignored) {
+                // already reported
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.ed.inf.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Appends processed orders to JSON lines files as they arrive, one record per line, instead of writing one array
+ * per run as {@link Serializer} does. The files roll over with the order date: deliveries-[orderDate].jsonl and
+ * flightpath-[orderDate].jsonl, whose lines are the same records as the elements of deliveries-[date].json and
+ * flightpath-[date].json. Files that already exist are appended to, so a restarted run carries on where it stopped.
+ * Only the {@value #MAX_OPEN_FILES} most recently written files are kept open; an order for an older date closes the
+ * least recently written file and reopens its own.
+ * */
+public class RollingSerializer {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final byte[] NEWLINE = {'\n'};
+    // a deliveries and a flightpath file for each of the last few dates
+    public static final int MAX_OPEN_FILES = 8;
+
+    private final Path directory;
+    // open files by name, kept open between orders, least recently written first
+    private final LinkedHashMap<String, OutputStream> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param directory Where the files are written.
+     * */
+    public RollingSerializer(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Appends the delivery of an order, and its flightpath if it has one.
+     * @param flightpath The drone's positions, or an empty array for an invalid order.
+     * */
+    public void add(Order order, LngLat src, LngLat dest, LngLat[] flightpath) throws IOException {
+        String date = (order.getOrderDate() == null) ? "undated" : order.getOrderDate().toString();
+        for (int i = 0; i < flightpath.length - 1; i++) {
+            writeLine(file("flightpath-" + date + ".jsonl"), new FlightpathSerializer(order, flightpath[i], flightpath[i+1]));
+        }
+        writeLine(file("deliveries-" + date + ".jsonl"), new DeliverySerializer(order, src, dest));
+    }
+
+    private OutputStream file(String name) throws IOException {
+        OutputStream file = this.files.get(name);
+        if (file == null) {
+            if (this.files.size() >= MAX_OPEN_FILES) {
+                Iterator<OutputStream> eldest = this.files.values().iterator();
+                OutputStream closing = eldest.next();
+                eldest.remove();
+                closing.close();
+            }
+            file = new BufferedOutputStream(Files.newOutputStream(this.directory.resolve(name),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            this.files.put(name, file);
+        }
+        return file;
+    }
+
+    private static void writeLine(OutputStream file, Object record) throws IOException {
+        file.write(OBJECT_MAPPER.writeValueAsBytes(record));
+        file.write(NEWLINE);
+    }
+
+    /**
+     * Hands everything added so far to the file system, so that it is not lost if the process stops.
+     * */
+    public void flush() throws IOException {
+        for (OutputStream file: this.files.values()) {
+            file.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes every file.
+     * */
+    public void close() throws IOException {
+        IOException failure = null;
+        for (OutputStream file: this.files.values()) {
+            try {
+                file.close();
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+        }
+        this.files.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -23,6 +23,11 @@ public class Serializer {
     // this arraylist will be written out to drone[date].geojson
     ArrayList<Feature> featureCollection;
 
+    // in streaming mode the records are written as they are added instead, and the arraylists stay empty
+    private final JsonArrayWriter flightpathWriter;
+    private final JsonArrayWriter deliveriesWriter;
+    private final JsonArrayWriter mapWriter;
+
     /**
      * Responsible for writing the result of executing the program into 3 separate files: flightpath[date].json,
      * deliveries[date].json and drone[date].json.
@@ -32,33 +37,93 @@ public class Serializer {
         this.flightPathSerializers = new ArrayList<>();
         this.deliveriesSerializers = new ArrayList<>();
         this.featureCollection = new ArrayList<>();
+        this.flightpathWriter = null;
+        this.deliveriesWriter = null;
+        this.mapWriter = null;
+    }
+
+    private Serializer(String date) {
+        this.flightPathSerializers = new ArrayList<>();
+        this.deliveriesSerializers = new ArrayList<>();
+        this.featureCollection = new ArrayList<>();
+        this.flightpathWriter = new JsonArrayWriter(outputPath("flightpath", date));
+        this.deliveriesWriter = new JsonArrayWriter(outputPath("deliveries", date));
+        this.mapWriter = new JsonArrayWriter(outputPath("drone", date), "FeatureCollection", "features");
+    }
+
+    /**
+     * Creates a serializer in streaming mode: every record is written to its file as soon as it is added, so memory
+     * use does not depend on the number of orders. The files are byte for byte the same as those written by
+     * {@link #serialize(String)} in the default mode, and a file is still only created if it has any records.
+     * Call {@link #serialize(String)} once every order has been added to finish the files.
+     * @param date Appended to the filenames, as in {@link #serialize(String)}.
+     * */
+    public static Serializer streaming(String date) {
+        return new Serializer(date);
+    }
+
+    private boolean isStreaming() {
+        return this.flightpathWriter != null;
     }
 
     // after every order is processed, add processed information to the respective buckets
     public void addToFlightPathSerializer(Order order, LngLat[] flightpath) {
         for (int i = 0; i < flightpath.length - 1; i++) {
-            this.flightPathSerializers
-                    .add(new FlightpathSerializer(order, flightpath[i], flightpath[i+1]));
+            FlightpathSerializer flightpathSerializer = new FlightpathSerializer(order, flightpath[i], flightpath[i+1]);
+            if (isStreaming()) {
+                this.flightpathWriter.write(flightpathSerializer);
+            }
+            else {
+                this.flightPathSerializers.add(flightpathSerializer);
+            }
         }
     }
     public void addToDeliverySerializer(Order order, LngLat src, LngLat dest) {
         DeliverySerializer deliverySerializer = new DeliverySerializer(order, src, dest);
-        this.deliveriesSerializers.add(deliverySerializer);
+        if (isStreaming()) {
+            this.deliveriesWriter.write(deliverySerializer);
+        }
+        else {
+            this.deliveriesSerializers.add(deliverySerializer);
+        }
     }
     public void addToFeatureCollection(LngLat[] dronePath) {
-        featureCollection.add(new Feature(new Geometry(dronePath, "LineString"), "dronePath"));
+        Feature feature = new Feature(new Geometry(dronePath, "LineString"), "dronePath");
+        if (isStreaming()) {
+            this.mapWriter.write(feature);
+        }
+        else {
+            featureCollection.add(feature);
+        }
     }
 
     /**
      * This function is responsible for writing the result files, appending the date to the filename.
+     * In streaming mode the records are already written, and this finishes and closes the files named with the date
+     * given to {@link #streaming(String)}.
      * */
     public void serialize(String date) {
+        if (isStreaming()) {
+            this.flightpathWriter.close();
+            this.deliveriesWriter.close();
+            this.mapWriter.close();
+            return;
+        }
         // write json string to file with date
         outputFlightpath(date);
         outputDeliveries(date);
         outputMap(date);
     }
 
+    // name[-date].json
+    private static String outputPath(String name, String date) {
+        String path = name;
+        if (!date.isBlank()) {
+            path += ("-" + date);
+        }
+        return path + ".json";
+    }
+
     /**
      * This function is used to write an object out to JSON format.
      * @param path Determines the filename of the outputted file
@@ -88,11 +153,7 @@ public class Serializer {
             return;
         }
 
-        String path = "flightpath";
-        if (!date.isBlank()) {
-            path += ("-" + date);
-        }
-        path += ".json";
+        String path = outputPath("flightpath", date);
         outputFile(path, this.flightPathSerializers);
     }
 
@@ -102,11 +163,7 @@ public class Serializer {
             return;
         }
 
-        String path = "drone";
-        if (!date.isBlank()) {
-            path += ("-" + date);
-        }
-        path += ".json";
+        String path = outputPath("drone", date);
         GeoJson geoJson = new GeoJson(this.featureCollection.toArray(new Feature[0]));
         outputFile(path, geoJson);
     }
@@ -117,11 +174,7 @@ public class Serializer {
             return;
         }
 
-        String path = "deliveries";
-        if (!date.isBlank()) {
-            path += ("-" + date);
-        }
-        path += ".json";
+        String path = outputPath("deliveries", date);
         outputFile(path, this.deliveriesSerializers);
     }
 }
@@ -0,0 +1,72 @@
+package uk.ac.ed.inf.validator;
+
+/**
+ * Character-scan checks for the credit card fields of an order. They accept exactly the strings that the regular
+ * expressions "[0-9]{16}", "(?:0[1-9]|1[0-2])[/][0-9]{2}" and "[0-9]{3}" accept, but compile no pattern and allocate
+ * nothing, and the expiry date is parsed in the same pass that checks it.
+ * */
+public final class CardValidator {
+    // returned by parseExpiry when the expiry date does not have the MM/YY format
+    public static final int INVALID_EXPIRY = -1;
+
+    private CardValidator() {}
+
+    /**
+     * @return True if the card number is exactly 16 ASCII digits.
+     * */
+    public static boolean isValidCardNumber(String cardNumber) {
+        return isDigits(cardNumber, 16);
+    }
+
+    /**
+     * @return True if the CVV is exactly 3 ASCII digits.
+     * */
+    public static boolean isValidCvv(String cvv) {
+        return isDigits(cvv, 3);
+    }
+
+    private static boolean isDigits(String value, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the expiry date has the format MM/YY with a month from 01 to 12, and parses it.
+     * @return The month and year packed as month * 100 + year (so "07/26" is 726), or {@link #INVALID_EXPIRY}.
+     * Use {@link #expiryMonth(int)} and {@link #expiryYear(int)} to unpack.
+     * */
+    public static int parseExpiry(String expiry) {
+        if (expiry.length() != 5 || expiry.charAt(2) != '/') {
+            return INVALID_EXPIRY;
+        }
+        int m1 = expiry.charAt(0) - '0';
+        int m2 = expiry.charAt(1) - '0';
+        int y1 = expiry.charAt(3) - '0';
+        int y2 = expiry.charAt(4) - '0';
+        // any non digit character ends up outside 0..9
+        if ((m1 | m2 | y1 | y2) < 0 || m1 > 9 || m2 > 9 || y1 > 9 || y2 > 9) {
+            return INVALID_EXPIRY;
+        }
+        int month = m1 * 10 + m2;
+        if (month < 1 || month > 12) {
+            return INVALID_EXPIRY;
+        }
+        return month * 100 + y1 * 10 + y2;
+    }
+
+    public static int expiryMonth(int expiry) {
+        return expiry / 100;
+    }
+
+    public static int expiryYear(int expiry) {
+        return expiry % 100;
+    }
+}
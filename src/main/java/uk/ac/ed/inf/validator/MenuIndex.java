@@ -0,0 +1,90 @@
+package uk.ac.ed.inf.validator;
+
+import uk.ac.ed.inf.ilp.data.Pizza;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import java.time.DayOfWeek;
+import java.util.HashMap;
+
+/**
+ * Immutable lookup from pizza name to the restaurant that sells it, built once from the defined restaurants.
+ * Pizza names are unique system-wide, so one lookup per pizza is enough to validate an order and to find the
+ * restaurant the drone has to fly to. Lookups do not allocate.
+ * */
+public final class MenuIndex {
+    /**
+     * What the index knows about one pizza.
+     * @param restaurant The restaurant selling the pizza.
+     * @param restaurantId Position of the restaurant in the array the index was built from, cheap to compare.
+     * @param priceInPence The menu price of the pizza.
+     * @param openingDays Bit (1 << {@link DayOfWeek#ordinal()}) is set for every day the restaurant is open.
+     * */
+    public record MenuEntry(Restaurant restaurant, int restaurantId, int priceInPence, int openingDays) {
+        public boolean isOpenOn(DayOfWeek day) {
+            return (this.openingDays & (1 << day.ordinal())) != 0;
+        }
+    }
+
+    private final Restaurant[] restaurants;
+    private final HashMap<String, MenuEntry> pizzas;
+
+    private MenuIndex(Restaurant[] restaurants) {
+        // copied, so that changes to the caller's array can be noticed by isIndexOf
+        this.restaurants = restaurants.clone();
+        this.pizzas = new HashMap<>();
+        for (int id = 0; id < restaurants.length; id++) {
+            Restaurant restaurant = restaurants[id];
+            int openingDays = 0;
+            if (restaurant.openingDays() != null) {
+                for (DayOfWeek day: restaurant.openingDays()) {
+                    openingDays |= 1 << day.ordinal();
+                }
+            }
+            if (restaurant.menu() == null) {
+                continue;
+            }
+            for (Pizza pizza: restaurant.menu()) {
+                // a later restaurant wins if a name is ever reused, as the validator always did
+                this.pizzas.put(pizza.name(), new MenuEntry(restaurant, id, pizza.priceInPence(), openingDays));
+            }
+        }
+    }
+
+    /**
+     * @param restaurants The defined restaurants.
+     * @return An index over every pizza on their menus.
+     * */
+    public static MenuIndex of(Restaurant[] restaurants) {
+        return new MenuIndex(restaurants);
+    }
+
+    /**
+     * @return The entry of the pizza with this name, or null if no restaurant sells it.
+     * */
+    public MenuEntry get(String pizzaName) {
+        return this.pizzas.get(pizzaName);
+    }
+
+    /**
+     * @return The restaurant selling the pizza with this name, or null if no restaurant sells it.
+     * */
+    public Restaurant getRestaurant(String pizzaName) {
+        MenuEntry entry = this.pizzas.get(pizzaName);
+        return (entry == null) ? null : entry.restaurant();
+    }
+
+    /**
+     * @return True if the index was built from exactly these restaurant objects, in this order.
+     * */
+    public boolean isIndexOf(Restaurant[] restaurants) {
+        if (restaurants.length != this.restaurants.length) {
+            return false;
+        }
+        for (int i = 0; i < restaurants.length; i++) {
+            if (restaurants[i] != this.restaurants[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -9,8 +9,11 @@ import uk.ac.ed.inf.ilp.data.Restaurant;
 import uk.ac.ed.inf.ilp.interfaces.OrderValidation;
 import uk.ac.ed.inf.ilp.data.Pizza;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
     Given an order and a list of restaurants,
@@ -18,8 +21,90 @@ import java.util.HashMap;
     then return the order.
  */
 public class OrderValidator implements OrderValidation {
+    // below this many orders a batch is validated serially instead of being split further
+    static final int SPLIT_THRESHOLD = 256;
+
+    /**
+     * Validates a whole batch of orders. Validating one order does not depend on any other order, so the list is
+     * split across the common {@link ForkJoinPool}. Every order is validated exactly as by
+     * {@link #validateOrder(Order, Restaurant[])}, so the result is identical to validating the orders one by one.
+     * @param orders The orders to validate, each one is updated in place.
+     * @param definedRestaurants The restaurants the orders may come from.
+     * @return The validated orders, in the same order as they were passed in.
+     */
+    public List<Order> validateAll(List<Order> orders, Restaurant[] definedRestaurants) {
+        return validateAll(orders, indexOf(definedRestaurants));
+    }
+
+    /**
+     * Same as {@link #validateAll(List, Restaurant[])}, with a {@link MenuIndex} that was built beforehand.
+     */
+    public List<Order> validateAll(List<Order> orders, MenuIndex menuIndex) {
+        Order[] validated = new Order[orders.size()];
+        ForkJoinPool.commonPool().invoke(new ValidateTask(orders, menuIndex, validated, 0, orders.size()));
+        return new ArrayList<>(Arrays.asList(validated));
+    }
+
+    /**
+     * Validates orders[from, to) into the same positions of validated, splitting the range in half until it is small
+     * enough to validate serially.
+     */
+    // never serialized, ForkJoinTask is only Serializable by inheritance
+    @SuppressWarnings("serial")
+    private class ValidateTask extends RecursiveAction {
+        private final List<Order> orders;
+        private final MenuIndex menuIndex;
+        private final Order[] validated;
+        private final int from;
+        private final int to;
+
+        ValidateTask(List<Order> orders, MenuIndex menuIndex, Order[] validated, int from, int to) {
+            this.orders = orders;
+            this.menuIndex = menuIndex;
+            this.validated = validated;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= SPLIT_THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.validated[i] = validateOrder(this.orders.get(i), this.menuIndex);
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ValidateTask(this.orders, this.menuIndex, this.validated, this.from, middle),
+                    new ValidateTask(this.orders, this.menuIndex, this.validated, middle, this.to));
+        }
+    }
+
+    // the index of the restaurants last validated against, so repeated calls with the same restaurants don't rebuild it
+    private volatile MenuIndex lastMenuIndex;
+
+    private MenuIndex indexOf(Restaurant[] definedRestaurants) {
+        MenuIndex menuIndex = this.lastMenuIndex;
+        if (menuIndex == null || !menuIndex.isIndexOf(definedRestaurants)) {
+            menuIndex = MenuIndex.of(definedRestaurants);
+            this.lastMenuIndex = menuIndex;
+        }
+        return menuIndex;
+    }
+
     @Override
     public Order validateOrder(Order orderToValidate, Restaurant[] definedRestaurants) {
+        return validateOrder(orderToValidate, indexOf(definedRestaurants));
+    }
+
+    /**
+     * Validates one order against a {@link MenuIndex} of the defined restaurants. The work per order is one index
+     * lookup per pizza.
+     * @param orderToValidate The order, updated in place.
+     * @param menuIndex Index of the defined restaurants.
+     * @return The validated order.
+     */
+    public Order validateOrder(Order orderToValidate, MenuIndex menuIndex) {
         // --------------------------------------------------------------------
         // Null checking section
         if (orderToValidate.getPizzasInOrder() == null) {
@@ -76,7 +161,7 @@ public class OrderValidator implements OrderValidation {
          Check if card number is 16 characters
          Check if string contains non-numeric character
         */
-        if (!creditCardInformation.getCreditCardNumber().matches("[0-9]{16}")) {
+        if (!CardValidator.isValidCardNumber(creditCardInformation.getCreditCardNumber())) {
             orderToValidate.setOrderValidationCode(OrderValidationCode.CARD_NUMBER_INVALID);
             orderToValidate.setOrderStatus(OrderStatus.INVALID);
             return orderToValidate;
@@ -86,8 +171,10 @@ public class OrderValidator implements OrderValidation {
          *** Check if expiry date is valid
          Check expiry date fits the expected pattern: MM/YY
          Reject invalid month values like 13
+         The month and year are parsed in the same pass
         */
-        if (!orderToValidate.getCreditCardInformation().getCreditCardExpiry().matches("(?:0[1-9]|1[0-2])[/][0-9]{2}")) {
+        int expiryDate = CardValidator.parseExpiry(creditCardInformation.getCreditCardExpiry());
+        if (expiryDate == CardValidator.INVALID_EXPIRY) {
             orderToValidate.setOrderValidationCode(OrderValidationCode.EXPIRY_DATE_INVALID);
             orderToValidate.setOrderStatus(OrderStatus.INVALID);
             return orderToValidate;
@@ -95,12 +182,8 @@ public class OrderValidator implements OrderValidation {
 
         // Check card is not expired
         LocalDate date = orderToValidate.getOrderDate();
-        int expiryDateMonth = Integer.parseInt(
-                creditCardInformation.getCreditCardExpiry().substring(0,2)
-        );
-        int expiryDateYear = Integer.parseInt(
-                creditCardInformation.getCreditCardExpiry().substring(3,5)
-        );
+        int expiryDateMonth = CardValidator.expiryMonth(expiryDate);
+        int expiryDateYear = CardValidator.expiryYear(expiryDate);
 
         /*
          Expiry year 97 refers to 1997, expiry year 20 refers to 2020 so
@@ -132,7 +215,7 @@ public class OrderValidator implements OrderValidation {
          - Check that it is numeric
         */
 
-        if (!creditCardInformation.getCvv().matches("[0-9]{3}")) {
+        if (!CardValidator.isValidCvv(creditCardInformation.getCvv())) {
             orderToValidate.setOrderValidationCode(OrderValidationCode.CVV_INVALID);
             orderToValidate.setOrderStatus(OrderStatus.INVALID);
             return orderToValidate;
@@ -155,21 +238,10 @@ public class OrderValidator implements OrderValidation {
 
         /*
         Due to pizza names being unique system-wide,
-        construct a hashmap using pizza names as keys and restaurants as values.
+        the menu index maps pizza names to the restaurants selling them.
         */
-        HashMap<String, Restaurant> pizzaToRestaurant = new HashMap();
-        for (Restaurant restaurant: definedRestaurants) {
-            for (Pizza pizza: restaurant.menu()) {
-                pizzaToRestaurant.put(pizza.name(), restaurant);
-            }
-        }
-
-        boolean pizzaExists = true;
         for (Pizza pizza: orderToValidate.getPizzasInOrder()) {
-            if (!pizzaToRestaurant.containsKey(pizza.name())) {
-                pizzaExists = false;
-            }
-            if (!pizzaExists) {
+            if (menuIndex.get(pizza.name()) == null) {
                 orderToValidate.setOrderValidationCode(OrderValidationCode.PIZZA_NOT_DEFINED);
                 orderToValidate.setOrderStatus(OrderStatus.INVALID);
                 return orderToValidate;
@@ -178,10 +250,10 @@ public class OrderValidator implements OrderValidation {
 
         // *** Check if pizzas were ordered from multiple restaurants
 
-        Restaurant initialRestaurant = pizzaToRestaurant.get(orderToValidate.getPizzasInOrder()[0].name());
+        MenuIndex.MenuEntry initialRestaurant = menuIndex.get(orderToValidate.getPizzasInOrder()[0].name());
 
         for (Pizza pizza: orderToValidate.getPizzasInOrder()) {
-            if (!pizzaToRestaurant.get(pizza.name()).name().equals(initialRestaurant.name())) {
+            if (!menuIndex.get(pizza.name()).restaurant().name().equals(initialRestaurant.restaurant().name())) {
                 orderToValidate.setOrderValidationCode(OrderValidationCode.PIZZA_FROM_MULTIPLE_RESTAURANTS);
                 orderToValidate.setOrderStatus(OrderStatus.INVALID);
                 return orderToValidate;
@@ -189,7 +261,7 @@ public class OrderValidator implements OrderValidation {
         }
 
         // *** Check if the restaurant is closed on the order day
-        if (!Arrays.asList(initialRestaurant.openingDays()).contains(orderToValidate.getOrderDate().getDayOfWeek())) {
+        if (!initialRestaurant.isOpenOn(orderToValidate.getOrderDate().getDayOfWeek())) {
             orderToValidate.setOrderValidationCode(OrderValidationCode.RESTAURANT_CLOSED);
             orderToValidate.setOrderStatus(OrderStatus.INVALID);
             return orderToValidate;
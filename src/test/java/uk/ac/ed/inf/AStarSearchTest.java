@@ -0,0 +1,116 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the A* search on the compressed graph finds paths that are never longer than those of the old
+// HashMap based A*, and that every leg of them is unobstructed, for random src and dest positions.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneGrid;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.util.*;
+
+public class AStarSearchTest {
+    private static boolean visible(ZoneGrid zoneGrid, LngLat p, LngLat q) {
+        return !zoneGrid.onSameZone(p, q) && !zoneGrid.crossesEdge(p, q);
+    }
+
+    // DronePathFinder.pathfind as it was before the compressed graph, returning the length of its path
+    private static double oldPathLength(VisibilityGraph visibilityGraph, List<LngLat> nodes, LngLat src, LngLat dest) {
+        ZoneGrid zoneGrid = visibilityGraph.getZoneSet().getZoneGrid();
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        HashMap<LngLat, ArrayList<LngLat>> splice = new HashMap<>();
+        splice.put(src, new ArrayList<>());
+        splice.putIfAbsent(dest, new ArrayList<>());
+        if (!src.equals(dest) && visible(zoneGrid, src, dest)) {
+            splice.get(src).add(dest);
+            splice.get(dest).add(src);
+        }
+        for (LngLat endpoint: new LngLat[]{src, dest}) {
+            for (LngLat node: nodes) {
+                if (visible(zoneGrid, endpoint, node)) {
+                    splice.get(endpoint).add(node);
+                    splice.computeIfAbsent(node, k -> new ArrayList<>()).add(endpoint);
+                }
+            }
+        }
+        HashMap<LngLat, Double> local = new HashMap<>();
+        HashMap<LngLat, Double> global = new HashMap<>();
+        PriorityQueue<LngLat> open = new PriorityQueue<>(Comparator.comparingDouble(o -> global.getOrDefault(o, Double.MAX_VALUE)));
+        HashMap<LngLat, LngLat> parent = new HashMap<>();
+        HashSet<LngLat> closed = new HashSet<>();
+        open.add(src);
+        local.put(src, 0.0);
+        global.put(src, lngLatHandler.distanceTo(src, dest));
+        parent.put(src, null);
+        while (!open.isEmpty() && !open.peek().equals(dest)) {
+            LngLat current = open.poll();
+            closed.add(current);
+            List<LngLat> neighbours = new ArrayList<>(visibilityGraph.getNeighbours(current));
+            neighbours.addAll(splice.getOrDefault(current, new ArrayList<>()));
+            for (LngLat neighbour: neighbours) {
+                if (!closed.contains(neighbour)) {
+                    open.add(neighbour);
+                }
+                double lower = local.getOrDefault(current, Double.MAX_VALUE) + lngLatHandler.distanceTo(current, neighbour);
+                if (lower < local.getOrDefault(neighbour, Double.MAX_VALUE)) {
+                    parent.put(neighbour, current);
+                    local.put(neighbour, lower);
+                    global.put(neighbour, lower + lngLatHandler.distanceTo(neighbour, dest));
+                }
+            }
+        }
+        if (!parent.containsKey(dest)) {
+            return Double.NaN;
+        }
+        double length = 0.0;
+        for (LngLat current = dest; !current.equals(src); current = parent.get(current)) {
+            length += lngLatHandler.distanceTo(current, parent.get(current));
+        }
+        return length;
+    }
+
+    @Test
+    void testPathsAgainstOldSearch() throws Exception {
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        NamedRegion centralArea = TestUtils.loadCentralArea();
+        ZoneSet zoneSet = new ZoneSet(centralArea, noFlyZones);
+        VisibilityGraph visibilityGraph = new VisibilityGraph(zoneSet);
+        List<LngLat> nodes = new ArrayList<>(List.of(centralArea.vertices()));
+        for (NamedRegion zone: noFlyZones) {
+            nodes.addAll(List.of(zone.vertices()));
+        }
+        LngLatHandler lngLatHandler = new LngLatHandler();
+
+        Random random = new Random(23);
+        int checked = 0;
+        while (checked < 500) {
+            LngLat src = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            // some queries start or end on a static node
+            LngLat dest = (checked % 5 == 0) ? nodes.get(random.nextInt(nodes.size()))
+                    : new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            if (lngLatHandler.isInRegions(src, noFlyZones) || lngLatHandler.isInRegions(dest, noFlyZones)) {
+                continue;
+            }
+            LngLat[] waypoints = new DronePathFinder(visibilityGraph, src, dest).pathfind();
+            double expected = oldPathLength(visibilityGraph, nodes, src, dest);
+            if (Double.isNaN(expected)) {
+                assert waypoints.length == 0;
+                continue;
+            }
+            assert waypoints[0].equals(src) && waypoints[waypoints.length - 1].equals(dest);
+            double length = 0.0;
+            for (int i = 0; i < waypoints.length - 1; i++) {
+                length += lngLatHandler.distanceTo(waypoints[i], waypoints[i + 1]);
+                assert visible(zoneSet.getZoneGrid(), waypoints[i], waypoints[i + 1]);
+            }
+            assert length <= expected + 1e-12 : src + " " + dest + " " + length + " > " + expected;
+            checked++;
+        }
+    }
+}
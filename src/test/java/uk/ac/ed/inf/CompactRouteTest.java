@@ -0,0 +1,71 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that a route encoded as direction codes gives back exactly the positions it was encoded from, also after a
+// RouteStore round trip, and that routes which are not made of compass moves are not encoded.
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.pathfinder.CompactRoute;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.RouteStore;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompactRouteTest {
+    private static final LngLat DEPOT = Context.DEPOT;
+    private static final LngLat DEST = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+    @Test
+    void testRoutesDecodeExactly() throws Exception {
+        VisibilityGraph visibilityGraph = new VisibilityGraph(TestUtils.loadZoneSet());
+        for (String planner: new String[]{DronePathFinder.LATTICE_PLANNER, DronePathFinder.GREEDY_PLANNER}) {
+            System.setProperty(DronePathFinder.PLANNER_PROPERTY, planner);
+            try {
+                ArrayList<LngLat> route = new DronePathFinder(visibilityGraph, DEPOT, DEST).getRoute();
+                CompactRoute compactRoute = CompactRoute.encode(route);
+                assert compactRoute != null : planner;
+                assert compactRoute.size() == route.size();
+                // bit for bit the same positions, so the serialized output does not change
+                assert Arrays.equals(compactRoute.toArray(new LngLat[0]), route.toArray(new LngLat[0]));
+                assert compactRoute.equals(route);
+                for (int i = 0; i < route.size(); i += 7) {
+                    assert compactRoute.get(i).equals(route.get(i));
+                }
+                // a LngLat is 32 bytes on its own, without the reference to it
+                assert compactRoute.getEncodedBytes() * 10 < route.size() * 32;
+            }
+            finally {
+                System.clearProperty(DronePathFinder.PLANNER_PROPERTY);
+            }
+        }
+    }
+
+    @Test
+    void testOnlyCompassMovesEncode() {
+        assert CompactRoute.encode(List.of()) == null;
+        assert CompactRoute.encode(List.of(DEPOT, DEST)) == null;
+        List<LngLat> hover = List.of(DEPOT, DEPOT);
+        assert hover.equals(CompactRoute.encode(hover));
+    }
+
+    @Test
+    void testStoreRoundTrip(@TempDir Path dir) throws Exception {
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        ArrayList<LngLat> route = new DronePathFinder(new VisibilityGraph(zoneSet), DEPOT, DEST).getRoute();
+        Path path = dir.resolve("routes.bin");
+        RouteStore store = RouteStore.open(path, zoneSet);
+        store.put(DEPOT, DEST, CompactRoute.encode(route));
+        store.save();
+
+        List<LngLat> loaded = RouteStore.open(path, zoneSet).get(DEPOT, DEST);
+        assert loaded instanceof CompactRoute;
+        assert Arrays.equals(loaded.toArray(new LngLat[0]), route.toArray(new LngLat[0]));
+    }
+}
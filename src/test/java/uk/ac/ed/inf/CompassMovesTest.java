@@ -0,0 +1,50 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that moving by the precomputed compass table lands on exactly the position the trigonometry gives, for every
+// direction, and that angles and directions convert both ways.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.pathfinder.CompassMoves;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+
+import java.util.Random;
+
+public class CompassMovesTest {
+    @Test
+    void testTableMatchesTrigonometry() {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            LngLat start = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            double[] position = {start.lng(), start.lat()};
+            int direction = random.nextInt(CompassMoves.DIRECTIONS);
+            double angle = direction * 22.5;
+            LngLat expected = new LngLat(
+                    start.lng() + SystemConstants.DRONE_MOVE_DISTANCE * Math.cos(Math.toRadians(angle)),
+                    start.lat() + SystemConstants.DRONE_MOVE_DISTANCE * Math.sin(Math.toRadians(angle)));
+            assert CompassMoves.move(start, direction).equals(expected);
+            assert lngLatHandler.nextPosition(start, angle).equals(expected);
+            CompassMoves.move(position, direction);
+            assert new LngLat(position[0], position[1]).equals(expected);
+            // moving back lands within rounding of the start
+            CompassMoves.move(position, CompassMoves.opposite(direction));
+            assert Math.abs(position[0] - start.lng()) < 1e-15 && Math.abs(position[1] - start.lat()) < 1e-15;
+        }
+        assert lngLatHandler.nextPosition(new LngLat(-3.19, 55.94), CompassMoves.HOVER_ANGLE).equals(new LngLat(-3.19, 55.94));
+    }
+
+    @Test
+    void testDirections() {
+        for (int direction = 0; direction < CompassMoves.DIRECTIONS; direction++) {
+            assert CompassMoves.direction(CompassMoves.angle(direction)) == direction;
+        }
+        assert CompassMoves.direction(360.0) == -1;
+        assert CompassMoves.direction(-22.5) == -1;
+        assert CompassMoves.direction(10.0) == -1;
+        assert CompassMoves.direction(CompassMoves.HOVER_ANGLE) == -1;
+        assert CompassMoves.opposite(0) == 8 && CompassMoves.opposite(12) == 4;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the fleet dispatcher delivers every order at most once, keeps every drone within its move budget and
+// every trip within its capacity, and that a trip to one restaurant costs the moves of the flight a Context writes.
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FleetDispatcherTest {
+    private ReferenceData referenceData;
+    // the valid orders of 2023-09-01
+    private List<Order> orders;
+
+    @BeforeEach
+    void loadData(@TempDir Path storeDir) throws IOException {
+        ObjectMapper objectMapper = Context.getObjectMapper();
+        this.referenceData = TestUtils.loadReferenceData(storeDir.resolve(ReferenceData.ROUTE_STORE));
+        List<Order> day = List.of(objectMapper.readValue(new File("orders.json"), Order[].class)).stream()
+                .filter(order -> order.getOrderDate().equals(LocalDate.of(2023, 9, 1)))
+                .toList();
+        this.orders = new OrderValidator().validateAll(day, this.referenceData.getMenuIndex()).stream()
+                .filter(order -> order.getOrderValidationCode() == OrderValidationCode.NO_ERROR)
+                .toList();
+        assert !this.orders.isEmpty();
+    }
+
+    // every order is delivered or undelivered exactly once, and no drone or trip is over its limits
+    private void checkDispatch(FleetDispatcher.Dispatch dispatch, int drones, int moveBudget, int capacity) {
+        Set<String> seen = new HashSet<>();
+        int deliveries = 0;
+        int moves = 0;
+        assert dispatch.drones().size() == drones;
+        for (FleetDispatcher.DroneSchedule schedule: dispatch.drones()) {
+            int droneMoves = 0;
+            for (FleetDispatcher.Trip trip: schedule.trips()) {
+                assert !trip.orders().isEmpty() && trip.orders().size() <= capacity;
+                assert !trip.stops().isEmpty();
+                trip.orders().forEach(order -> { assert seen.add(order.getOrderNo()); });
+                droneMoves += trip.moves();
+            }
+            assert droneMoves == schedule.moves() && droneMoves <= moveBudget;
+            deliveries += schedule.deliveries();
+            moves += schedule.moves();
+        }
+        dispatch.undelivered().forEach(order -> { assert seen.add(order.getOrderNo()); });
+        assert seen.size() == this.orders.size();
+        assert deliveries == dispatch.deliveries() && moves == dispatch.moves();
+    }
+
+    @Test
+    void testSingleOrderTrips() {
+        FleetDispatcher.Dispatch dispatch = new FleetDispatcher(this.referenceData, 2, 100_000, 1).dispatch(this.orders);
+        checkDispatch(dispatch, 2, 100_000, 1);
+        assert dispatch.deliveries() == this.orders.size();
+        for (FleetDispatcher.DroneSchedule schedule: dispatch.drones()) {
+            for (FleetDispatcher.Trip trip: schedule.trips()) {
+                List<LngLat> route = this.referenceData.getRoute(Context.DEPOT, trip.stops().get(0));
+                assert trip.moves() == route.size() - 1;
+            }
+        }
+    }
+
+    @Test
+    void testSharedTrips() {
+        FleetDispatcher single = new FleetDispatcher(this.referenceData, 3, 100_000, 1);
+        FleetDispatcher shared = new FleetDispatcher(this.referenceData, 3, 100_000, 3);
+        FleetDispatcher.Dispatch alone = single.dispatch(this.orders);
+        FleetDispatcher.Dispatch together = shared.dispatch(this.orders);
+        checkDispatch(together, 3, 100_000, 3);
+        assert together.deliveries() == this.orders.size();
+        assert together.moves() < alone.moves();
+        // the drones share the work
+        for (FleetDispatcher.DroneSchedule schedule: together.drones()) {
+            assert schedule.moves() * 2 < together.moves();
+        }
+        // and the plan does not depend on how the parallel starts were scheduled
+        assert shared.dispatch(this.orders).moves() == together.moves();
+    }
+
+    @Test
+    void testTightBudget() {
+        FleetDispatcher.Dispatch dispatch = new FleetDispatcher(this.referenceData, 2, 300, 3).dispatch(this.orders);
+        checkDispatch(dispatch, 2, 300, 3);
+        assert !dispatch.undelivered().isEmpty();
+        assert dispatch.deliveries() > 0;
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that a flight planned by the lattice planner never needs more moves than the greedy planner following the
+// waypoints, never goes below its own lower bound, only makes legal compass moves, ends close to the goal, keeps every
+// move clear of the no-fly zones, and never enters the central area from outside on the way out. Around a single
+// zone, where the only ways round run along its own edges, verify that it needs no more moves than a hand-routed path.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.LatticePlanner;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.util.Random;
+
+public class LatticePlannerTest {
+    private static boolean isCompassMove(LngLatHandler lngLatHandler, LngLat p, LngLat q) {
+        for (int direction = 0; direction < 16; direction++) {
+            if (lngLatHandler.nextPosition(p, direction * 22.5).equals(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testAgainstGreedy() throws Exception {
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        VisibilityGraph visibilityGraph = new VisibilityGraph(zoneSet);
+        LngLatHandler lngLatHandler = new LngLatHandler();
+
+        Random random = new Random(17);
+        int checked = 0;
+        int greedyMoves = 0;
+        int latticeMoves = 0;
+        int unreachable = 0;
+        while (checked < 100) {
+            // routes are planned outbound, from the depot
+            LngLat src = Context.DEPOT;
+            LngLat dest = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            if (lngLatHandler.isInRegions(dest, noFlyZones)) {
+                continue;
+            }
+            LngLat[] path = LatticePlanner.plan(visibilityGraph, src, dest, LatticePlanner.DEFAULT_MAX_EXPANSIONS);
+            if (path == null) {
+                // dest is only reachable by leaving the central area and coming back in, or it is inside zone "6",
+                // whose vertices loop round it several times so the point test sees its inside as outside
+                unreachable++;
+                continue;
+            }
+            if (path.length == 0) {
+                assert lngLatHandler.isCloseTo(src, dest);
+                continue;
+            }
+            assert path[0].equals(src);
+            assert lngLatHandler.isCloseTo(path[path.length - 1], dest);
+            for (int j = 0; j < path.length - 1; j++) {
+                assert isCompassMove(lngLatHandler, path[j], path[j + 1]);
+                assert !lngLatHandler.isInRegions(path[j + 1], noFlyZones);
+                assert !zoneSet.getZoneGrid().crossesZone(path[j], path[j + 1]);
+                assert zoneSet.isInCentralArea(path[j]) || !zoneSet.isInCentralArea(path[j + 1]);
+            }
+            assert path.length - 1 >= LatticePlanner.minimumMoves(src, dest) - 1e-9;
+
+            // the greedy planner follows the waypoints, the lattice planner flies straight to the goal
+            DronePathFinder dronePathFinder = new DronePathFinder(visibilityGraph, src, dest);
+            LngLat[] waypoints = dronePathFinder.pathfind();
+            int greedy = 0;
+            LngLat current = waypoints[0];
+            for (int i = 1; i < waypoints.length; i++) {
+                LngLat[] leg = dronePathFinder.buildGreedyPath(current, waypoints[i]);
+                if (leg.length > 0) {
+                    greedy += leg.length - 1;
+                    current = leg[leg.length - 1];
+                }
+            }
+            // the greedy planner can get stuck where the lattice planner cannot
+            if (lngLatHandler.isCloseTo(current, dest)) {
+                assert path.length - 1 <= greedy : dest + ": " + (path.length - 1) + " > " + greedy;
+                latticeMoves += path.length - 1;
+                greedyMoves += greedy;
+            }
+            checked++;
+        }
+        System.out.println("Lattice planner: " + latticeMoves + " moves, greedy: " + greedyMoves + " moves, "
+                + unreachable + " unreachable");
+        assert unreachable < 10;
+        assert latticeMoves <= greedyMoves;
+    }
+
+    @Test
+    void testAroundSingleZone() {
+        // a square of half side 0.001 at the origin, deep inside the central area, closed as in namedregions.json
+        NamedRegion zone = new NamedRegion("square", new LngLat[]{new LngLat(-0.001, -0.001), new LngLat(0.001, -0.001),
+                new LngLat(0.001, 0.001), new LngLat(-0.001, 0.001), new LngLat(-0.001, -0.001)});
+        NamedRegion centralArea = new NamedRegion("central", new LngLat[]{new LngLat(-1, -1), new LngLat(1, -1),
+                new LngLat(1, 1), new LngLat(-1, 1)});
+        ZoneSet zoneSet = new ZoneSet(centralArea, new NamedRegion[]{zone});
+        VisibilityGraph visibilityGraph = new VisibilityGraph(zoneSet);
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        LngLat src = new LngLat(-0.003, 0);
+        LngLat dest = new LngLat(0.003, 0);
+
+        // by hand, over the top: 3 moves at 45 degrees and 12 at 22.5 to clear the corner, 14 east along the top,
+        // 2 at 315 degrees, then 337.5 degrees until close
+        double[] angles = {45, 22.5, 0, 315, 337.5};
+        int[] counts = {3, 12, 14, 2, Integer.MAX_VALUE};
+        int handMoves = 0;
+        LngLat current = src;
+        for (int run = 0; run < angles.length && !lngLatHandler.isCloseTo(current, dest); run++) {
+            for (int i = 0; i < counts[run] && !lngLatHandler.isCloseTo(current, dest); i++) {
+                LngLat next = lngLatHandler.nextPosition(current, angles[run]);
+                assert zoneSet.isStepAllowed(current, next);
+                current = next;
+                handMoves++;
+            }
+        }
+        assert handMoves == 43;
+
+        LngLat[] path = LatticePlanner.plan(visibilityGraph, src, dest, LatticePlanner.DEFAULT_MAX_EXPANSIONS);
+        assert path != null;
+        assert path[0].equals(src);
+        assert lngLatHandler.isCloseTo(path[path.length - 1], dest);
+        for (int j = 0; j < path.length - 1; j++) {
+            assert isCompassMove(lngLatHandler, path[j], path[j + 1]);
+            assert zoneSet.isStepAllowed(path[j], path[j + 1]);
+        }
+        assert path.length - 1 <= handMoves : (path.length - 1) + " > " + handMoves;
+    }
+}
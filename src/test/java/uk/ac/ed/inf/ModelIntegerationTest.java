@@ -34,13 +34,13 @@ public class ModelIntegerationTest {
         // drone path validation
         Context sampleContext = getSampleContext();
         sampleContext.setSrc(new LngLat(55.94450099032128, -3.1870685189557175));
-        sampleContext.setDest(getCiverinosRestaurant().location());
+        LngLat dest = getCiverinosRestaurant().location();
         ObjectMapper mapper = new ObjectMapper();
         try {
             NamedRegion[] noFlyZones = mapper.readValue(Paths.get("namedregions.json").toFile(), NamedRegion[].class);
-            ArrayList<LngLat> flightpath = new DronePathFinder(sampleContext).getRoute();
+            ArrayList<LngLat> flightpath = new DronePathFinder(sampleContext.getVisibilityGraph(), sampleContext.getSrc(), dest).getRoute();
             System.out.println("Executing Path Validation..");
-            assert validateFlightPath(flightpath, noFlyZones, sampleContext.getSrc(), sampleContext.getDest());
+            assert validateFlightPath(flightpath, noFlyZones, sampleContext.getSrc(), dest);
         }
         catch (Exception e) {
             System.out.println(e.getMessage());
@@ -0,0 +1,59 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the occupancy raster gives exactly the same answers as the exact no-fly zone test, at several
+// resolutions, and that it stays within its cell budget.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.OccupancyRaster;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.util.Random;
+
+public class OccupancyRasterTest {
+    private static void assertAgrees(ZoneSet zoneSet, OccupancyRaster raster) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        Random random = new Random(13);
+        for (int i = 0; i < 100_000; i++) {
+            LngLat point = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            assert raster.isInAny(point) == lngLatHandler.isInRegions(point, zoneSet.getNoFlyZones()) : point;
+        }
+        // and on the edges themselves, where the raster has to fall back to the exact test
+        for (NamedRegion zone: zoneSet.getNoFlyZones()) {
+            LngLat[] vertices = zone.vertices();
+            for (int i = 0; i < vertices.length; i++) {
+                LngLat p = vertices[i];
+                LngLat q = vertices[(i + 1) % vertices.length];
+                for (int j = 0; j <= 100; j++) {
+                    double t = j / 100.0;
+                    LngLat point = new LngLat(p.lng() + t * (q.lng() - p.lng()), p.lat() + t * (q.lat() - p.lat()));
+                    assert raster.isInAny(point) == lngLatHandler.isInRegions(point, zoneSet.getNoFlyZones()) : point;
+                }
+            }
+        }
+    }
+
+    @Test
+    void testResolutions() throws Exception {
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        for (double cellSize: new double[]{OccupancyRaster.DEFAULT_CELL_SIZE, 0.00001, 0.001}) {
+            assertAgrees(zoneSet, OccupancyRaster.of(zoneSet, cellSize, OccupancyRaster.DEFAULT_MAX_CELLS));
+        }
+        // the raster the zone set builds by default
+        assert zoneSet.getOccupancyRaster() != null;
+        assertAgrees(zoneSet, zoneSet.getOccupancyRaster());
+    }
+
+    @Test
+    void testCellBudget() throws Exception {
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        // asks for far more cells than allowed
+        OccupancyRaster raster = OccupancyRaster.of(zoneSet, 1e-7, 10_000);
+        assert (long) raster.getColumns() * raster.getRows() <= 10_000;
+        assert raster.getCellSize() > 1e-7;
+        assertAgrees(zoneSet, raster);
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that a tailed file only yields complete lines, that a restarted feed carries on from its checkpoint, that
+// spool files are moved once read, that an order the validator throws on is skipped, and that the rolling outputs hold
+// one delivery per order and only keep a few files open.
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.serializers.RollingSerializer;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+public class OrderFeedTest {
+    private final ObjectMapper objectMapper = Context.getObjectMapper();
+    private ReferenceData referenceData;
+    // the first two orders of orders.json, which are invalid, and its first valid order, all dated 2023-09-01
+    private List<String> lines;
+
+    @BeforeEach
+    void loadData(@TempDir Path storeDir) throws IOException {
+        this.referenceData = TestUtils.loadReferenceData(storeDir.resolve(ReferenceData.ROUTE_STORE));
+        JsonNode orders = this.objectMapper.readTree(new File("orders.json"));
+        JsonNode valid = null;
+        for (int i = 0; valid == null; i++) {
+            Order order = this.objectMapper.treeToValue(orders.get(i), Order.class);
+            new OrderValidator().validateOrder(order, this.referenceData.getMenuIndex());
+            if (order.getOrderValidationCode() == OrderValidationCode.NO_ERROR) {
+                valid = orders.get(i);
+            }
+        }
+        this.lines = List.of(orders.get(0).toString(), orders.get(1).toString(), valid.toString());
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static long countLines(Path file) throws IOException {
+        return Files.exists(file) ? Files.readAllLines(file).size() : 0;
+    }
+
+    @Test
+    void testTail(@TempDir Path dir) throws IOException {
+        Path feed = dir.resolve("orders.jsonl");
+        Path deliveries = dir.resolve("deliveries-2023-09-01.jsonl");
+        OrderFeed orderFeed = new OrderFeed(this.referenceData, feed, dir);
+        assert orderFeed.poll() == 0;
+
+        // the third order is still being written
+        String third = this.lines.get(2);
+        append(feed, this.lines.get(0) + "\n" + this.lines.get(1) + "\n\nnot an order\n" + third.substring(0, 20));
+        assert orderFeed.poll() == 2;
+        assert countLines(deliveries) == 2;
+        append(feed, third.substring(20) + "\n");
+        assert orderFeed.poll() == 1;
+        orderFeed.close();
+        assert countLines(deliveries) == 3;
+        assert countLines(dir.resolve("flightpath-2023-09-01.jsonl")) > 0;
+        JsonNode delivery = this.objectMapper.readTree(Files.readAllLines(deliveries).get(0));
+        assert delivery.get("orderNo").asText().equals(this.objectMapper.readTree(this.lines.get(0)).get("orderNo").asText());
+
+        // a restarted feed only reads what was appended since
+        OrderFeed restarted = new OrderFeed(this.referenceData, feed, dir);
+        assert restarted.poll() == 0;
+        append(feed, this.lines.get(0) + "\n");
+        assert restarted.poll() == 1;
+        restarted.close();
+        assert countLines(deliveries) == 4;
+    }
+
+    @Test
+    void testSpool(@TempDir Path dir) throws IOException {
+        Path spool = Files.createDirectory(dir.resolve("spool"));
+        OrderFeed orderFeed = new OrderFeed(this.referenceData, spool, dir);
+        // the last line of a spool file needs no newline
+        Files.writeString(spool.resolve("a.jsonl"), this.lines.get(0) + "\n" + this.lines.get(1));
+        Files.writeString(spool.resolve("b.jsonl"), this.lines.get(2) + "\n");
+        Files.writeString(spool.resolve("c.tmp"), this.lines.get(2) + "\n");
+        assert orderFeed.poll() == 3;
+        assert orderFeed.poll() == 0;
+        orderFeed.close();
+        assert Files.exists(spool.resolve(OrderFeed.PROCESSED_DIRECTORY).resolve("a.jsonl"));
+        assert Files.exists(spool.resolve(OrderFeed.PROCESSED_DIRECTORY).resolve("b.jsonl"));
+        assert Files.exists(spool.resolve("c.tmp"));
+        assert countLines(dir.resolve("deliveries-2023-09-01.jsonl")) == 3;
+    }
+
+    @Test
+    void testBrokenOrderIsSkipped(@TempDir Path dir) throws IOException {
+        Path feed = dir.resolve("orders.jsonl");
+        // parses as an order, but the validator throws on the missing pizza
+        String broken = ((ObjectNode) this.objectMapper.readTree(this.lines.get(2)))
+                .set("pizzasInOrder", this.objectMapper.createArrayNode().addNull()).toString();
+        append(feed, broken + "\n" + this.lines.get(2) + "\n");
+        OrderFeed orderFeed = new OrderFeed(this.referenceData, feed, dir);
+        assert orderFeed.poll() == 1;
+        orderFeed.close();
+        assert countLines(dir.resolve("deliveries-2023-09-01.jsonl")) == 1;
+
+        // the checkpoint is past the broken line, so a restarted feed does not meet it again
+        OrderFeed restarted = new OrderFeed(this.referenceData, feed, dir);
+        assert restarted.poll() == 0;
+        restarted.close();
+    }
+
+    @Test
+    void testRollingFilesAcrossDates(@TempDir Path dir) throws IOException {
+        RollingSerializer serializer = new RollingSerializer(dir);
+        Order order = this.objectMapper.readValue(this.lines.get(0), Order.class);
+        LocalDate date = order.getOrderDate();
+        // more dates than files kept open, and back to the first one, which is reopened and appended to
+        for (int i = 0; i <= RollingSerializer.MAX_OPEN_FILES; i++) {
+            order.setOrderDate(date.plusDays(i));
+            serializer.add(order, Context.DEPOT, Context.DEPOT, new LngLat[0]);
+        }
+        order.setOrderDate(date);
+        serializer.add(order, Context.DEPOT, Context.DEPOT, new LngLat[0]);
+        serializer.close();
+        assert countLines(dir.resolve("deliveries-" + date + ".jsonl")) == 2;
+        assert countLines(dir.resolve("deliveries-" + date.plusDays(RollingSerializer.MAX_OPEN_FILES) + ".jsonl")) == 1;
+    }
+}
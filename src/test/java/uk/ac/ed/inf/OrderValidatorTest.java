@@ -6,6 +6,7 @@ import uk.ac.ed.inf.ilp.data.Order;
 
 import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
 import uk.ac.ed.inf.ilp.data.*;
+import uk.ac.ed.inf.validator.CardValidator;
 import uk.ac.ed.inf.validator.OrderValidator;
 
 import javax.swing.plaf.BorderUIResource;
@@ -232,4 +233,29 @@ public class OrderValidatorTest {
         Order order = getSampleOrder();
         assert (OrderValidationCode.NO_ERROR == orderValidator.validateOrder(order, getSampleRestaurants()).getOrderValidationCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCardChecksMatchRegex() {
+        // The character-scan checks must accept exactly what the old regular expressions accepted
+        String[] numbers = {"1234567890123456", "123456789012345", "12345678901234567", "123456789012345a",
+                "", " 234567890123456", "１234567890123456", "0000000000000000", "/234567890123456"};
+        for (String number: numbers) {
+            assert CardValidator.isValidCardNumber(number) == number.matches("[0-9]{16}");
+        }
+        String[] expiries = {"01/24", "12/99", "00/24", "13/24", "1/24", "01-24", "01/2a", "01/245", "0a/24", "09/:4",
+                "10/00", "19/24", "", "12/2", "２1/24"};
+        for (String expiry: expiries) {
+            boolean valid = expiry.matches("(?:0[1-9]|1[0-2])[/][0-9]{2}");
+            int parsed = CardValidator.parseExpiry(expiry);
+            assert valid == (parsed != CardValidator.INVALID_EXPIRY);
+            if (valid) {
+                assert CardValidator.expiryMonth(parsed) == Integer.parseInt(expiry.substring(0, 2));
+                assert CardValidator.expiryYear(parsed) == Integer.parseInt(expiry.substring(3, 5));
+            }
+        }
+        String[] cvvs = {"123", "000", "12", "1234", "12a", "", "/12", ":12"};
+        for (String cvv: cvvs) {
+            assert CardValidator.isValidCvv(cvv) == cvv.matches("[0-9]{3}");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that batch validation gives exactly the same result as serial validation on the bundled orders.json.
+// The throughput of both is timed by benchmark.ValidationBenchmark.
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.serializers.DeliverySerializer;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class OrderValidatorThroughputTest {
+    private static final LngLat ORIGIN = new LngLat(0.0, 0.0);
+
+    @Test
+    void testBatchMatchesSerial() throws Exception {
+        Restaurant[] restaurants = TestUtils.loadRestaurants();
+        OrderValidator orderValidator = new OrderValidator();
+
+        ArrayList<Order> serialOrders = TestUtils.loadOrders();
+        for (Order order: serialOrders) {
+            orderValidator.validateOrder(order, restaurants);
+        }
+        ArrayList<Order> batchOrders = TestUtils.loadOrders();
+        List<Order> validated = orderValidator.validateAll(batchOrders, restaurants);
+
+        assert validated.size() == serialOrders.size();
+        // compare the serialized records, which hold every field the validator sets
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (int i = 0; i < serialOrders.size(); i++) {
+            assert validated.get(i) == batchOrders.get(i);
+            String serial = objectMapper.writeValueAsString(new DeliverySerializer(serialOrders.get(i), ORIGIN, ORIGIN));
+            String batch = objectMapper.writeValueAsString(new DeliverySerializer(validated.get(i), ORIGIN, ORIGIN));
+            assert serial.equals(batch);
+        }
+
+        // and both agree with the bundled deliveries.json
+        List<Map<String, Object>> expected = objectMapper.readValue(new File("deliveries.json"), new TypeReference<>() {});
+        assert expected.size() == validated.size();
+        for (int i = 0; i < expected.size(); i++) {
+            assert expected.get(i).get("orderValidationCode").equals(validated.get(i).getOrderValidationCode().toString());
+            assert expected.get(i).get("orderStatus").equals(validated.get(i).getOrderStatus().toString());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that a PreparedRegion gives exactly the same answer as LngLatHandler.isInRegion, for random points around
+// the bundled no-fly zones and central area, and for points on or right next to their vertices and edges.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.PreparedRegion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PreparedRegionTest {
+    private static ArrayList<NamedRegion> loadRegions() throws Exception {
+        ArrayList<NamedRegion> regions = new ArrayList<>(List.of(TestUtils.loadNoFlyZones()));
+        regions.add(TestUtils.loadCentralArea());
+        return regions;
+    }
+
+    private static void assertAgrees(NamedRegion region, PreparedRegion prepared, LngLat point) {
+        boolean expected = new LngLatHandler().isInRegion(point, region);
+        assert prepared.contains(point) == expected : region.name() + " " + point;
+    }
+
+    @Test
+    void testRandomPoints() throws Exception {
+        Random random = new Random(7);
+        for (NamedRegion region: loadRegions()) {
+            PreparedRegion prepared = PreparedRegion.of(region);
+            for (int i = 0; i < 20_000; i++) {
+                LngLat point = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+                assertAgrees(region, prepared, point);
+            }
+        }
+    }
+
+    @Test
+    void testVerticesAndEdges() throws Exception {
+        Random random = new Random(11);
+        for (NamedRegion region: loadRegions()) {
+            PreparedRegion prepared = PreparedRegion.of(region);
+            LngLat[] vertices = region.vertices();
+            for (int i = 0; i < vertices.length; i++) {
+                LngLat p = vertices[i];
+                LngLat q = vertices[(i + 1) % vertices.length];
+                assertAgrees(region, prepared, p);
+                // nudge the vertex by a single ulp in every direction
+                for (double lng: new double[]{Math.nextDown(p.lng()), p.lng(), Math.nextUp(p.lng())}) {
+                    for (double lat: new double[]{Math.nextDown(p.lat()), p.lat(), Math.nextUp(p.lat())}) {
+                        assertAgrees(region, prepared, new LngLat(lng, lat));
+                    }
+                }
+                // points along the edge
+                for (int j = 0; j < 100; j++) {
+                    double t = random.nextDouble();
+                    assertAgrees(region, prepared, new LngLat(p.lng() + t * (q.lng() - p.lng()), p.lat() + t * (q.lat() - p.lat())));
+                }
+            }
+        }
+        // an empty region contains nothing
+        NamedRegion empty = new NamedRegion("", new LngLat[0]);
+        assertAgrees(empty, PreparedRegion.of(empty), new LngLat(-3.19, 55.94));
+    }
+}
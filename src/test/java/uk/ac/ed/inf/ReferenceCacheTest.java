@@ -0,0 +1,135 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that reference data endpoints are revalidated with their ETag and served from disk when unchanged or when
+// the server is down or failing, that a 404 is not hidden by the copy on disk, and that fetching an unchanged world returns the reference data that was already built.
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReferenceCacheTest {
+    private HttpServer server;
+    private String url;
+    private volatile String centralArea = "{\"name\":\"central\",\"vertices\":[]}";
+    private final AtomicInteger notModified = new AtomicInteger();
+    // the status every endpoint answers with, when not 200
+    private volatile int status = 200;
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        if (this.status != 200) {
+            exchange.sendResponseHeaders(this.status, -1);
+            exchange.close();
+            return;
+        }
+        String etag = "\"" + ReferenceCache.sha256(body) + "\"";
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            this.notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/centralArea", exchange -> respond(exchange, this.centralArea.getBytes(StandardCharsets.UTF_8)));
+        this.server.createContext("/restaurants", exchange -> respond(exchange, Files.readAllBytes(Path.of("restaurants.json"))));
+        this.server.createContext("/noFlyZones", exchange -> respond(exchange, Files.readAllBytes(Path.of("namedregions.json"))));
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        this.server.stop(0);
+    }
+
+    private static RestClient getClient() {
+        return new RestClient(Duration.ofSeconds(2), Duration.ofSeconds(2), 0, Duration.ZERO);
+    }
+
+    private static String fetch(ReferenceCache referenceCache, String url) {
+        return new String(referenceCache.fetchAsync(getClient(), url, "centralArea").join(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRevalidation(@TempDir Path dir) {
+        String first = this.centralArea;
+        assert fetch(new ReferenceCache(dir), this.url).equals(first);
+
+        // a later run only revalidates
+        ReferenceCache referenceCache = new ReferenceCache(dir);
+        assert fetch(referenceCache, this.url).equals(first);
+        assert referenceCache.getNotModified() == 1 && referenceCache.getDownloaded() == 0;
+        assert this.notModified.get() == 1;
+
+        // a changed endpoint is downloaded again
+        this.centralArea = "{\"name\":\"central\",\"vertices\":[{\"lng\":-3.19,\"lat\":55.94}]}";
+        assert fetch(referenceCache, this.url).equals(this.centralArea);
+        assert referenceCache.getDownloaded() == 1;
+
+        // and served from disk while the server is down
+        this.server.stop(0);
+        ReferenceCache offline = new ReferenceCache(dir);
+        assert fetch(offline, this.url).equals(this.centralArea);
+        assert offline.getStale() == 1;
+    }
+
+    @Test
+    void testUnchangedWorldIsReused(@TempDir Path dir) {
+        System.setProperty(ReferenceCache.DIRECTORY_PROPERTY, dir.toString());
+        try {
+            ReferenceData first = ReferenceData.fetch(this.url);
+            assert first.getRestaurants().length > 0;
+            assert ReferenceData.fetch(this.url) == first;
+
+            this.centralArea = "{\"name\":\"central\",\"vertices\":[{\"lng\":-3.19,\"lat\":55.94}]}";
+            assert ReferenceData.fetch(this.url) != first;
+        }
+        finally {
+            System.clearProperty(ReferenceCache.DIRECTORY_PROPERTY);
+        }
+    }
+
+    @Test
+    void testOnlyUnavailableServersFallBack(@TempDir Path dir) {
+        ReferenceCache referenceCache = new ReferenceCache(dir);
+        String first = this.centralArea;
+        assert fetch(referenceCache, this.url).equals(first);
+
+        this.status = 503;
+        assert fetch(referenceCache, this.url).equals(first);
+        assert referenceCache.getStale() == 1;
+
+        this.status = 404;
+        try {
+            fetch(referenceCache, this.url);
+            assert false : "expected the 404 to fail the fetch";
+        }
+        catch (CompletionException e) {
+            assert e.getCause() instanceof RestClient.StatusException;
+            assert ((RestClient.StatusException) e.getCause()).getStatus() == 404;
+        }
+        assert referenceCache.getStale() == 1;
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify against a local stand-in server that the rest client decompresses gzip responses, retries failed requests
+// with backoff but not missing endpoints, and fetches several endpoints at the same time.
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+public class RestClientTest {
+    private static final String BODY = "{\"name\":\"central\",\"vertices\":[]}";
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/plain", exchange -> respond(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8)));
+        this.server.createContext("/gzip", exchange -> {
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            assert accepted != null && accepted.contains("gzip");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            respond(exchange, 200, compressed.toByteArray());
+        });
+        // fails twice before answering
+        this.server.createContext("/flaky", exchange -> {
+            int request = this.flakyRequests.incrementAndGet();
+            respond(exchange, (request <= 2) ? 503 : 200, (request <= 2) ? new byte[0] : BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        this.server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(300);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        this.server.stop(0);
+    }
+
+    private static RestClient getClient(int retries) {
+        return new RestClient(Duration.ofSeconds(2), Duration.ofSeconds(2), retries, Duration.ofMillis(10));
+    }
+
+    private static String read(InputStream input) throws IOException {
+        try (input) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testGzipIsDecoded() throws IOException {
+        RestClient restClient = getClient(0);
+        assert read(restClient.open(this.url, "plain")).equals(BODY);
+        assert read(restClient.open(this.url, "gzip")).equals(BODY);
+    }
+
+    @Test
+    void testRetries() throws IOException {
+        assert read(getClient(3).open(this.url, "flaky")).equals(BODY);
+        assert this.flakyRequests.get() == 3;
+
+        // without enough retries the last failure is reported
+        this.flakyRequests.set(0);
+        try {
+            getClient(1).open(this.url, "flaky");
+            assert false : "expected the request to fail";
+        }
+        catch (IOException e) {
+            assert e.getMessage().contains("503");
+        }
+        assert this.flakyRequests.get() == 2;
+
+        // a missing endpoint is not asked for again
+        try {
+            getClient(3).open(this.url, "missing");
+            assert false : "expected the request to fail";
+        }
+        catch (IOException e) {
+            assert e.getMessage().contains("404");
+        }
+    }
+
+    @Test
+    void testConcurrentRequests() throws IOException {
+        RestClient restClient = getClient(0);
+        long start_time = System.nanoTime();
+        List<CompletableFuture<InputStream>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(restClient.openAsync(this.url, "slow"));
+        }
+        for (CompletableFuture<InputStream> response: responses) {
+            assert RestClient.readString(response).equals(BODY);
+        }
+        double seconds = (System.nanoTime() - start_time) / 1_000_000_000.0;
+        // one after another they would take 1.2s
+        assert seconds < 1.0 : seconds;
+    }
+}
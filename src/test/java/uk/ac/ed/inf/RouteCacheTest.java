@@ -0,0 +1,109 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that routes are reused, evicted in LRU order and computed exactly once under contention.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.RouteCache;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RouteCacheTest {
+    private static final LngLat SRC = new LngLat(-3.186874, 55.944494);
+
+    private static ZoneSet getZoneSet(double offset) {
+        NamedRegion zone = new NamedRegion("zone", new LngLat[]{
+                new LngLat(-3.19 + offset, 55.94), new LngLat(-3.18 + offset, 55.94), new LngLat(-3.18 + offset, 55.95)});
+        return new ZoneSet(new NamedRegion("central", new LngLat[0]), new NamedRegion[]{zone});
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        RouteCache routeCache = new RouteCache();
+        ZoneSet zoneSet = getZoneSet(0.0);
+        LngLat dest = new LngLat(-3.19, 55.945);
+        AtomicInteger computed = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            List<LngLat> route = routeCache.getRoute(SRC, dest, zoneSet, () -> {
+                computed.incrementAndGet();
+                return new ArrayList<>(List.of(SRC, dest));
+            });
+            assert route.size() == 2;
+        }
+        assert computed.get() == 1;
+        assert routeCache.getMisses() == 1;
+        assert routeCache.getHits() == 9;
+    }
+
+    @Test
+    void testChangedZonesInvalidate() {
+        RouteCache routeCache = new RouteCache();
+        LngLat dest = new LngLat(-3.19, 55.945);
+        routeCache.getRoute(SRC, dest, getZoneSet(0.0), () -> List.of(SRC, dest));
+        // identical content in a fresh object is still a hit
+        routeCache.getRoute(SRC, dest, getZoneSet(0.0), () -> List.of(SRC, dest));
+        // moved zone is a miss
+        routeCache.getRoute(SRC, dest, getZoneSet(0.001), () -> List.of(SRC, dest));
+        assert routeCache.getHits() == 1;
+        assert routeCache.getMisses() == 2;
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        RouteCache routeCache = new RouteCache(2);
+        ZoneSet zoneSet = getZoneSet(0.0);
+        LngLat a = new LngLat(1.0, 1.0);
+        LngLat b = new LngLat(2.0, 2.0);
+        LngLat c = new LngLat(3.0, 3.0);
+        routeCache.getRoute(SRC, a, zoneSet, () -> List.of(a));
+        routeCache.getRoute(SRC, b, zoneSet, () -> List.of(b));
+        // touch a so that b becomes the eldest entry
+        routeCache.getRoute(SRC, a, zoneSet, () -> List.of(a));
+        routeCache.getRoute(SRC, c, zoneSet, () -> List.of(c));
+        assert routeCache.size() == 2;
+        long misses = routeCache.getMisses();
+        routeCache.getRoute(SRC, a, zoneSet, () -> List.of(a));
+        assert routeCache.getMisses() == misses;
+        routeCache.getRoute(SRC, b, zoneSet, () -> List.of(b));
+        assert routeCache.getMisses() == misses + 1;
+    }
+
+    @Test
+    void testConcurrentMissesComputeOnce() throws InterruptedException {
+        RouteCache routeCache = new RouteCache();
+        ZoneSet zoneSet = getZoneSet(0.0);
+        LngLat dest = new LngLat(-3.19, 55.945);
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                start.await();
+                return routeCache.getRoute(SRC, dest, zoneSet, () -> {
+                    computed.incrementAndGet();
+                    try {
+                        Thread.sleep(50);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return List.of(SRC, dest);
+                });
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assert executor.awaitTermination(10, TimeUnit.SECONDS);
+        assert computed.get() == 1;
+        assert routeCache.getHits() + routeCache.getMisses() == 8;
+    }
+}
@@ -0,0 +1,107 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that routes survive a save/open round trip, are invalidated when the obstacles change and are kept in the
+// file for other obstacles.
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.RouteCache;
+import uk.ac.ed.inf.pathfinder.RouteStore;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class RouteStoreTest {
+    private static final LngLat SRC = new LngLat(-3.186874, 55.944494);
+    private static final LngLat DEST = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+    private static ZoneSet getZoneSet(String name) {
+        NamedRegion zone = new NamedRegion(name, new LngLat[]{
+                new LngLat(-3.19, 55.94), new LngLat(-3.18, 55.94), new LngLat(-3.18, 55.95)});
+        return new ZoneSet(new NamedRegion("central", new LngLat[0]), new NamedRegion[]{zone});
+    }
+
+    private static List<LngLat> getSampleRoute() {
+        return List.of(SRC, new LngLat(-3.18702, 55.94456), DEST, DEST, new LngLat(-3.18702, 55.94456), SRC, SRC);
+    }
+
+    @Test
+    void testRoundTrip(@TempDir Path dir) {
+        Path path = dir.resolve("routes.bin");
+        RouteStore store = RouteStore.open(path, getZoneSet("zone"));
+        assert store.get(SRC, DEST) == null;
+        store.put(SRC, DEST, getSampleRoute());
+        store.save();
+        assert Files.isRegularFile(path);
+
+        // a fresh store, like a new JVM, reads the route back
+        RouteStore reopened = RouteStore.open(path, getZoneSet("zone"));
+        assert reopened.size() == 1;
+        assert getSampleRoute().equals(reopened.get(SRC, DEST));
+    }
+
+    @Test
+    void testChangedZonesInvalidate(@TempDir Path dir) {
+        Path path = dir.resolve("routes.bin");
+        RouteStore store = RouteStore.open(path, getZoneSet("zone"));
+        store.put(SRC, DEST, getSampleRoute());
+        store.save();
+
+        RouteStore changed = RouteStore.open(path, getZoneSet("renamed zone"));
+        assert changed.get(SRC, DEST) == null;
+        assert changed.getInvalidated() == 1;
+        changed.put(SRC, DEST, List.of(SRC, SRC, SRC, SRC));
+        changed.save();
+        // the stale route stays in the file for when the old zones come back
+        RouteStore restored = RouteStore.open(path, getZoneSet("zone"));
+        assert restored.size() == 1;
+        assert getSampleRoute().equals(restored.get(SRC, DEST));
+    }
+
+    @Test
+    void testEmptyZonesKeepStore(@TempDir Path dir) {
+        Path path = dir.resolve("routes.bin");
+        RouteStore store = RouteStore.open(path, getZoneSet("zone"));
+        store.put(SRC, DEST, getSampleRoute());
+        store.save();
+
+        // a run that could not fetch the obstacles must not wipe the store
+        ZoneSet empty = new ZoneSet(new NamedRegion("central", new LngLat[0]), new NamedRegion[0]);
+        RouteStore fallback = RouteStore.open(path, empty);
+        fallback.put(SRC, DEST, List.of(SRC, SRC, SRC, SRC));
+        fallback.save();
+        assert RouteStore.open(path, getZoneSet("zone")).size() == 1;
+        assert RouteStore.open(path, empty).size() == 1;
+    }
+
+    @Test
+    void testCacheLoadsFromStore(@TempDir Path dir) {
+        Path path = dir.resolve("routes.bin");
+        RouteStore store = RouteStore.open(path, getZoneSet("zone"));
+        store.put(SRC, DEST, getSampleRoute());
+        store.save();
+
+        RouteCache routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY, RouteStore.open(path, getZoneSet("zone")));
+        List<LngLat> route = routeCache.getRoute(SRC, DEST, getZoneSet("zone"), () -> {
+            throw new IllegalStateException("route should have been loaded from the store");
+        });
+        assert getSampleRoute().equals(route);
+        assert routeCache.getLoaded() == 1;
+    }
+
+    @Test
+    void testCorruptFileIsIgnored(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("routes.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5});
+        RouteStore store = RouteStore.open(path, getZoneSet("zone"));
+        assert store.size() == 0;
+        store.put(SRC, DEST, getSampleRoute());
+        store.save();
+        assert RouteStore.open(path, getZoneSet("zone")).size() == 1;
+    }
+}
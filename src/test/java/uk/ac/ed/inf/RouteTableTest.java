@@ -0,0 +1,65 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the precomputed route table agrees with a fresh A* search for every pair of terminals: the same path
+// length, waypoints that start and end at the terminals, and legs that are never obstructed.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.RouteTable;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneGrid;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+public class RouteTableTest {
+    private static double length(LngLat[] waypoints) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        double length = 0.0;
+        for (int i = 0; i < waypoints.length - 1; i++) {
+            length += lngLatHandler.distanceTo(waypoints[i], waypoints[i + 1]);
+        }
+        return length;
+    }
+
+    @Test
+    void testTableAgainstSearch() throws Exception {
+        NamedRegion centralArea = TestUtils.loadCentralArea();
+        Restaurant[] restaurants = TestUtils.loadRestaurants();
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        VisibilityGraph visibilityGraph = new VisibilityGraph(zoneSet);
+        ZoneGrid zoneGrid = zoneSet.getZoneGrid();
+
+        // a restaurant twice, and one on a vertex of the central area
+        LngLat[] locations = new LngLat[restaurants.length + 2];
+        for (int i = 0; i < restaurants.length; i++) {
+            locations[i] = restaurants[i].location();
+        }
+        locations[restaurants.length] = restaurants[0].location();
+        locations[restaurants.length + 1] = centralArea.vertices()[0];
+        RouteTable routeTable = RouteTable.build(visibilityGraph, Context.DEPOT, locations);
+        assert routeTable.size() == restaurants.length + 2;
+        assert routeTable.indexOf(Context.DEPOT) == 0;
+        assert routeTable.indexOf(new LngLat(0.0, 0.0)) == -1;
+        assert Double.isNaN(routeTable.distance(Context.DEPOT, new LngLat(0.0, 0.0)));
+
+        for (int i = 0; i < routeTable.size(); i++) {
+            for (int j = 0; j < routeTable.size(); j++) {
+                LngLat src = routeTable.getTerminal(i);
+                LngLat dest = routeTable.getTerminal(j);
+                LngLat[] waypoints = routeTable.waypoints(i, j);
+                assert waypoints[0].equals(src) && waypoints[waypoints.length - 1].equals(dest);
+                for (int k = 0; k < waypoints.length - 1; k++) {
+                    assert !zoneGrid.onSameZone(waypoints[k], waypoints[k + 1]);
+                    assert !zoneGrid.crossesEdge(waypoints[k], waypoints[k + 1]);
+                }
+                double expected = length(new DronePathFinder(visibilityGraph, src, dest).pathfind());
+                assert Math.abs(routeTable.distance(i, j) - expected) < 1e-12 : i + " " + j;
+                assert Math.abs(length(waypoints) - expected) < 1e-12;
+            }
+        }
+    }
+}
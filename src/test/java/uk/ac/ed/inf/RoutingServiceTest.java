@@ -0,0 +1,136 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the routing service answers /validate like the OrderValidator, /route like ReferenceData.getRoute,
+// rejects malformed requests and positions far from the zones with a 400, answers routes that cannot get close to
+// dest with a 422 without keeping them, never hands ad-hoc routes to the route store, and reports its latencies on
+// /stats.
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+public class RoutingServiceTest {
+    private final ObjectMapper objectMapper = Context.getObjectMapper();
+    private ReferenceData referenceData;
+    private RoutingService routingService;
+
+    @BeforeEach
+    void startService(@TempDir Path storeDir) throws IOException {
+        this.referenceData = TestUtils.loadReferenceData(storeDir.resolve(ReferenceData.ROUTE_STORE));
+        this.routingService = new RoutingService(this.referenceData, 0);
+        this.routingService.start();
+    }
+
+    @AfterEach
+    void stopService() {
+        this.routingService.stop();
+    }
+
+    private record Answer(int status, JsonNode body) {}
+
+    private Answer request(String method, String path, String body) throws IOException {
+        URI uri = URI.create("http://127.0.0.1:" + this.routingService.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = (status >= 400) ? connection.getErrorStream() : connection.getInputStream()) {
+            return new Answer(status, this.objectMapper.readTree(in));
+        }
+    }
+
+    @Test
+    void testValidate() throws IOException {
+        JsonNode orders = this.objectMapper.readTree(new File("orders.json"));
+        OrderValidator orderValidator = new OrderValidator();
+        for (int i = 0; i < Math.min(50, orders.size()); i++) {
+            Answer answer = request("POST", "/validate", orders.get(i).toString());
+            Order order = this.objectMapper.treeToValue(orders.get(i), Order.class);
+            Order expected = orderValidator.validateOrder(order, this.referenceData.getMenuIndex());
+            assert answer.status() == 200;
+            assert answer.body().get("orderNo").asText().equals(expected.getOrderNo());
+            assert answer.body().get("orderValidationCode").asText().equals(expected.getOrderValidationCode().name());
+            assert answer.body().get("orderStatus").asText().equals(expected.getOrderStatus().name());
+        }
+        assert request("POST", "/validate", "not json").status() == 400;
+        assert request("GET", "/validate", null).status() == 405;
+    }
+
+    @Test
+    void testRoute() throws IOException {
+        LngLat dest = this.referenceData.getRestaurants()[0].location();
+        String body = "{\"dest\": " + this.objectMapper.writeValueAsString(dest) + "}";
+        Answer answer = request("POST", "/route", body);
+        assert answer.status() == 200;
+        List<LngLat> expected = this.referenceData.getRoute(Context.DEPOT, dest);
+        JsonNode path = answer.body().get("path");
+        assert answer.body().get("moves").asInt() == expected.size() - 1;
+        assert path.size() == expected.size();
+        for (int i = 0; i < path.size(); i++) {
+            assert path.get(i).get("lng").doubleValue() == expected.get(i).lng();
+            assert path.get(i).get("lat").doubleValue() == expected.get(i).lat();
+        }
+        assert request("POST", "/route", "{}").status() == 400;
+        assert request("POST", "/route", "{\"dest\": {\"lng\": \"east\"}}").status() == 400;
+
+        JsonNode stats = request("GET", "/stats", null).body();
+        assert stats.get("/route").get("requests").asLong() == 3;
+        assert stats.get("/route").get("errors").asLong() == 2;
+        assert stats.get("/route").get("p99Millis").asDouble() >= stats.get("/route").get("p50Millis").asDouble();
+    }
+
+    private static String routeBody(ObjectMapper objectMapper, LngLat src, LngLat dest) throws IOException {
+        return "{\"src\": " + objectMapper.writeValueAsString(src) + ", \"dest\": " + objectMapper.writeValueAsString(dest) + "}";
+    }
+
+    @Test
+    void testAdHocRoutes() throws IOException {
+        int stored = this.referenceData.getRouteStore().size();
+        LngLat dest = new LngLat(Context.DEPOT.lng() + 0.002, Context.DEPOT.lat() + 0.001);
+        Answer answer = request("POST", "/route", routeBody(this.objectMapper, Context.DEPOT, dest));
+        assert answer.status() == 200;
+        assert answer.body().get("moves").asInt() > 0;
+
+        // far outside the zones
+        assert request("POST", "/route", routeBody(this.objectMapper, Context.DEPOT, new LngLat(0, 0))).status() == 400;
+
+        // a restaurant outside the central area back to the depot inside it: the drone may not enter it from outside,
+        // which is rejected before any planning
+        LngLat outside = null;
+        for (Restaurant restaurant: this.referenceData.getRestaurants()) {
+            if (!this.referenceData.getVisibilityGraph().getZoneSet().isInCentralArea(restaurant.location())) {
+                outside = restaurant.location();
+            }
+        }
+        assert outside != null;
+        assert request("POST", "/route", routeBody(this.objectMapper, outside, Context.DEPOT)).status() == 422;
+
+        // only the routable ad-hoc route is kept, and only in memory
+        String adHocRouteCache = request("GET", "/stats", null).body().get("adHocRouteCache").asText();
+        assert adHocRouteCache.contains("size=1/") : adHocRouteCache;
+        assert this.referenceData.getRouteStore().size() == stored;
+    }
+}
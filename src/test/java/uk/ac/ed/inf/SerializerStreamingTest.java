@@ -0,0 +1,76 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the streaming mode of the serializer writes exactly the same bytes as the default mode, and that it
+// still writes no file when there is nothing to write.
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.serializers.Serializer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class SerializerStreamingTest {
+    private static final String[] NAMES = {"flightpath", "deliveries", "drone"};
+    private static final LngLat ORIGIN = new LngLat(0.0, 0.0);
+
+    private static void fill(Serializer serializer, List<Order> orders) {
+        LngLat[] dronePath = {
+                new LngLat(-3.186874, 55.944494),
+                new LngLat(-3.186874, 55.944494),
+                new LngLat(-3.1870125819298765, 55.944551402514854),
+                new LngLat(-3.187151163859753, 55.94460880502971)
+        };
+        for (Order order: orders) {
+            serializer.addToFlightPathSerializer(order, dronePath);
+            serializer.addToDeliverySerializer(order, dronePath[0], dronePath[dronePath.length - 1]);
+            serializer.addToFeatureCollection(dronePath);
+        }
+    }
+
+    private static List<Order> orders() throws Exception {
+        return Arrays.asList(Context.getObjectMapper().readValue(new File("orders.json"), Order[].class)).subList(0, 50);
+    }
+
+    @AfterEach
+    void deleteFiles() {
+        for (String name: NAMES) {
+            new File(name + "-buffered-test.json").delete();
+            new File(name + "-streaming-test.json").delete();
+        }
+    }
+
+    @Test
+    void testStreamingMatchesBuffered() throws Exception {
+        Serializer buffered = new Serializer();
+        fill(buffered, orders());
+        buffered.serialize("buffered-test");
+
+        Serializer streaming = Serializer.streaming("streaming-test");
+        fill(streaming, orders());
+        streaming.serialize("streaming-test");
+
+        for (String name: NAMES) {
+            byte[] expected = Files.readAllBytes(new File(name + "-buffered-test.json").toPath());
+            byte[] actual = Files.readAllBytes(new File(name + "-streaming-test.json").toPath());
+            assert Arrays.equals(expected, actual);
+        }
+    }
+
+    @Test
+    void testStreamingSkipsEmptyFiles() throws Exception {
+        Serializer streaming = Serializer.streaming("streaming-test");
+        // invalid orders only produce a delivery record
+        streaming.addToDeliverySerializer(orders().get(0), ORIGIN, ORIGIN);
+        streaming.serialize("streaming-test");
+
+        assert new File("deliveries-streaming-test.json").exists();
+        assert !new File("flightpath-streaming-test.json").exists();
+        assert !new File("drone-streaming-test.json").exists();
+    }
+}
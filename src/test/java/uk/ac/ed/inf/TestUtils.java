@@ -1,9 +1,15 @@
 package uk.ac.ed.inf;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import uk.ac.ed.inf.ilp.data.*;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.ArrayList;
 
 public class TestUtils {
     public static CreditCardInformation getSampleCreditCardInformation() {
@@ -53,4 +59,30 @@ public class TestUtils {
         Context context = new Context("", "");
         return context;
     }
+
+    // the bundled orders
+    public static ArrayList<Order> loadOrders() throws IOException {
+        return Context.getObjectMapper().readValue(new File("orders.json"), new TypeReference<ArrayList<Order>>() {});
+    }
+
+    // the bundled copies of the REST server's reference data
+    public static Restaurant[] loadRestaurants() throws IOException {
+        return Context.getObjectMapper().readValue(new File("restaurants.json"), Restaurant[].class);
+    }
+
+    public static NamedRegion[] loadNoFlyZones() throws IOException {
+        return Context.getObjectMapper().readValue(new File("namedregions.json"), NamedRegion[].class);
+    }
+
+    public static NamedRegion loadCentralArea() throws IOException {
+        return Context.getObjectMapper().readValue(new File("centralarea.json"), NamedRegion.class);
+    }
+
+    public static ZoneSet loadZoneSet() throws IOException {
+        return new ZoneSet(loadCentralArea(), loadNoFlyZones());
+    }
+
+    public static ReferenceData loadReferenceData(Path routeStore) throws IOException {
+        return new ReferenceData(loadRestaurants(), loadCentralArea(), loadNoFlyZones(), routeStore);
+    }
 }
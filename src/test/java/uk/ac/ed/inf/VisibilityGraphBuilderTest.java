@@ -0,0 +1,126 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the visibility graph built with the indexed builder has exactly the same edges, in the same order, as
+// the old pairwise construction, and that it copes with zone sets of thousands of vertices.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class VisibilityGraphBuilderTest {
+    // VisibilityGraph.constructNodes and constructEdges as they were before the builder
+    private static HashMap<LngLat, ArrayList<LngLat>> naiveEdges(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        ArrayList<LngLat> nodes = new ArrayList<>(List.of(centralArea.vertices()));
+        for (NamedRegion zone: noFlyZones) {
+            nodes.addAll(List.of(zone.vertices()));
+        }
+        HashMap<LngLat, ArrayList<LngLat>> edgeSet = new HashMap<>();
+        for (LngLat node: nodes) {
+            edgeSet.putIfAbsent(node, new ArrayList<>());
+        }
+        for (int i = 0; i < nodes.size() - 1; i ++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                if (naiveVisibility(noFlyZones, nodes.get(i), nodes.get(j))) {
+                    edgeSet.get(nodes.get(i)).add(nodes.get(j));
+                    edgeSet.get(nodes.get(j)).add(nodes.get(i));
+                }
+            }
+        }
+        return edgeSet;
+    }
+
+    private static boolean naiveVisibility(NamedRegion[] noFlyZones, LngLat p, LngLat q) {
+        for (NamedRegion zone : noFlyZones)  {
+            for (int i = 0; i < zone.vertices().length - 1; i++) {
+                if (List.of(zone.vertices()).contains(p) && (List.of(zone.vertices()).contains(q))) {
+                    return false;
+                }
+                LngLat r = zone.vertices()[i];
+                LngLat s = zone.vertices()[i+1];
+                Line2D pq = new Line2D.Double(p.lng(), p.lat(), q.lng(), q.lat());
+                Line2D rs = new Line2D.Double(r.lng(), r.lat(), s.lng(), s.lat());
+                if (pq.intersectsLine(rs)) {
+                    boolean eqP = r.equals(p) || s.equals(p);
+                    boolean eqQ = r.equals(q) || s.equals(q);
+                    if (!(eqP || eqQ)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static NamedRegion[] generateZones(int count, long seed) {
+        Random random = new Random(seed);
+        NamedRegion[] noFlyZones = new NamedRegion[count];
+        for (int z = 0; z < count; z++) {
+            double lng = -3.25 + random.nextDouble() * 0.1;
+            double lat = 55.90 + random.nextDouble() * 0.1;
+            int n = 3 + random.nextInt(6);
+            LngLat[] vertices = new LngLat[n + 1];
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                double radius = 0.0005 + random.nextDouble() * 0.002;
+                vertices[i] = new LngLat(lng + radius * Math.cos(angle), lat + radius * Math.sin(angle));
+            }
+            vertices[n] = vertices[0];
+            noFlyZones[z] = new NamedRegion("zone" + z, vertices);
+        }
+        return noFlyZones;
+    }
+
+    private static void assertSameGraph(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        HashMap<LngLat, ArrayList<LngLat>> expected = naiveEdges(centralArea, noFlyZones);
+        VisibilityGraph visibilityGraph = new VisibilityGraph(new ZoneSet(centralArea, noFlyZones));
+        for (LngLat node: expected.keySet()) {
+            assert expected.get(node).equals(visibilityGraph.getNeighbours(node)) : node;
+        }
+    }
+
+    @Test
+    void testBundledZones() throws Exception {
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        NamedRegion centralArea = TestUtils.loadCentralArea();
+        assertSameGraph(centralArea, noFlyZones);
+    }
+
+    @Test
+    void testGeneratedZones() {
+        NamedRegion centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.20, 55.92), new LngLat(-3.20, 55.98), new LngLat(-3.16, 55.98), new LngLat(-3.16, 55.92)
+        });
+        assertSameGraph(centralArea, generateZones(50, 17));
+    }
+
+    @Test
+    void testThousandsOfVertices() {
+        NamedRegion[] noFlyZones = generateZones(500, 19);
+        int vertices = 0;
+        for (NamedRegion zone: noFlyZones) {
+            vertices += zone.vertices().length;
+        }
+        assert vertices > 2000;
+        long start_time = System.nanoTime();
+        VisibilityGraph visibilityGraph = new VisibilityGraph(new ZoneSet(new NamedRegion("central", new LngLat[0]), noFlyZones));
+        long end_time = System.nanoTime();
+        System.out.println("Building a visibility graph of " + vertices + " nodes took: " + ((end_time - start_time) / 1_000_000_000.0) + "s");
+        // edges are symmetric
+        for (NamedRegion zone: noFlyZones) {
+            for (LngLat node: zone.vertices()) {
+                for (LngLat neighbour: visibilityGraph.getNeighbours(node)) {
+                    assert visibilityGraph.getNeighbours(neighbour).contains(node);
+                }
+            }
+        }
+    }
+}
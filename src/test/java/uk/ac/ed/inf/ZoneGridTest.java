@@ -0,0 +1,148 @@
+package uk.ac.ed.inf;
+
+// Purpose of Test:
+// Verify that the ZoneGrid answers point and segment queries exactly like a scan over every no-fly zone edge, on the
+// bundled no-fly zones and on a few hundred generated zones, both for visibility and for single drone moves.
+// Also verify that the move check of the ZoneSet agrees with and without the occupancy raster.
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.pathfinder.PreparedRegion;
+import uk.ac.ed.inf.pathfinder.ZoneGrid;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ZoneGridTest {
+    // VisibilityGraph.hasVisibility as it was before the grid, scanning every edge
+    private static boolean naiveVisibility(NamedRegion[] noFlyZones, LngLat p, LngLat q) {
+        for (NamedRegion zone : noFlyZones)  {
+            for (int i = 0; i < zone.vertices().length - 1; i++) {
+                if (List.of(zone.vertices()).contains(p) && (List.of(zone.vertices()).contains(q))) {
+                    return false;
+                }
+                LngLat r = zone.vertices()[i];
+                LngLat s = zone.vertices()[i+1];
+                Line2D pq = new Line2D.Double(p.lng(), p.lat(), q.lng(), q.lat());
+                Line2D rs = new Line2D.Double(r.lng(), r.lat(), s.lng(), s.lat());
+                if (pq.intersectsLine(rs)) {
+                    boolean eqP = r.equals(p) || s.equals(p);
+                    boolean eqQ = r.equals(q) || s.equals(q);
+                    if (!(eqP || eqQ)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // a drone move touches a zone if it touches any edge of the closed polygon
+    private static boolean naiveCrossesZone(NamedRegion[] noFlyZones, LngLat p, LngLat q) {
+        for (NamedRegion zone: noFlyZones) {
+            LngLat[] vertices = zone.vertices();
+            for (int i = 0; i < vertices.length && vertices.length > 1; i++) {
+                LngLat r = vertices[i];
+                LngLat s = vertices[(i + 1) % vertices.length];
+                if (Line2D.linesIntersect(p.lng(), p.lat(), q.lng(), q.lat(), r.lng(), r.lat(), s.lng(), s.lat())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void assertAgrees(NamedRegion[] noFlyZones, ZoneSet zoneSet, Random random, List<LngLat> vertices,
+                                     double minLng, double minLat, double size, int queries) {
+        ZoneGrid zoneGrid = zoneSet.getZoneGrid();
+        for (int i = 0; i < queries; i++) {
+            LngLat p = new LngLat(minLng + random.nextDouble() * size, minLat + random.nextDouble() * size);
+            // mix in segments that start or end on a vertex, as the visibility graph builds them
+            LngLat q = (i % 2 == 0) ? vertices.get(random.nextInt(vertices.size()))
+                    : new LngLat(minLng + random.nextDouble() * size, minLat + random.nextDouble() * size);
+            if (i % 3 == 0) {
+                p = vertices.get(random.nextInt(vertices.size()));
+            }
+            boolean expected = naiveVisibility(noFlyZones, p, q);
+            boolean actual = !zoneGrid.onSameZone(p, q) && !zoneGrid.crossesEdge(p, q);
+            assert expected == actual : p + " " + q;
+            assert zoneGrid.isInAny(p) == PreparedRegion.isInAny(zoneSet.getPreparedNoFlyZones(), p) : p;
+            // a drone move from p, which may be anywhere including a vertex
+            LngLat step = new LngLat(p.lng() + 0.00015 * Math.cos(i), p.lat() + 0.00015 * Math.sin(i));
+            assert zoneGrid.crossesZone(p, step) == naiveCrossesZone(noFlyZones, p, step) : p + " " + step;
+            assert zoneGrid.crossesZone(p, q) == naiveCrossesZone(noFlyZones, p, q) : p + " " + q;
+        }
+    }
+
+    private static List<LngLat> allVertices(NamedRegion[] zones) {
+        ArrayList<LngLat> vertices = new ArrayList<>();
+        for (NamedRegion zone: zones) {
+            vertices.addAll(List.of(zone.vertices()));
+        }
+        return vertices;
+    }
+
+    @Test
+    void testBundledZones() throws Exception {
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        NamedRegion centralArea = TestUtils.loadCentralArea();
+        ZoneSet zoneSet = new ZoneSet(centralArea, noFlyZones);
+        assertAgrees(noFlyZones, zoneSet, new Random(3), allVertices(noFlyZones), -3.196, 55.940, 0.012, 50_000);
+    }
+
+    @Test
+    void testManyZones() {
+        Random random = new Random(5);
+        NamedRegion[] noFlyZones = new NamedRegion[300];
+        for (int z = 0; z < noFlyZones.length; z++) {
+            // small closed polygons of 3 to 8 vertices, scattered over a 0.1 degree square
+            double lng = -3.25 + random.nextDouble() * 0.1;
+            double lat = 55.90 + random.nextDouble() * 0.1;
+            int n = 3 + random.nextInt(6);
+            LngLat[] vertices = new LngLat[n + 1];
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                double radius = 0.001 + random.nextDouble() * 0.002;
+                vertices[i] = new LngLat(lng + radius * Math.cos(angle), lat + radius * Math.sin(angle));
+            }
+            vertices[n] = vertices[0];
+            noFlyZones[z] = new NamedRegion("zone" + z, vertices);
+        }
+        ZoneSet zoneSet = new ZoneSet(new NamedRegion("central", new LngLat[0]), noFlyZones);
+        assertAgrees(noFlyZones, zoneSet, random, allVertices(noFlyZones), -3.26, 55.89, 0.12, 20_000);
+    }
+
+    @Test
+    void testStepAllowed() throws Exception {
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        ZoneSet zoneSet = TestUtils.loadZoneSet();
+        assert zoneSet.getOccupancyRaster() != null;
+        ZoneGrid zoneGrid = zoneSet.getZoneGrid();
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            LngLat p = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+            double angle = Math.toRadians(22.5 * random.nextInt(16));
+            LngLat q = new LngLat(p.lng() + 0.00015 * Math.cos(angle), p.lat() + 0.00015 * Math.sin(angle));
+            boolean entersCentralArea = !zoneSet.isInCentralArea(p) && zoneSet.isInCentralArea(q);
+            boolean expected = !entersCentralArea && !naiveCrossesZone(noFlyZones, p, q)
+                    && !PreparedRegion.isInAny(zoneSet.getPreparedNoFlyZones(), q);
+            assert zoneSet.isStepAllowed(p, q) == expected : p + " " + q;
+            assert (!entersCentralArea && !zoneGrid.isInAny(q) && !zoneGrid.crossesZone(p, q)) == expected;
+        }
+    }
+
+    @Test
+    void testNoZones() {
+        ZoneGrid zoneGrid = new ZoneSet(new NamedRegion("central", new LngLat[0]), new NamedRegion[0]).getZoneGrid();
+        LngLat p = new LngLat(-3.19, 55.94);
+        LngLat q = new LngLat(-3.18, 55.95);
+        assert !zoneGrid.crossesEdge(p, q);
+        assert !zoneGrid.crossesZone(p, q);
+        assert !zoneGrid.onSameZone(p, q);
+        assert !zoneGrid.isInAny(p);
+    }
+}
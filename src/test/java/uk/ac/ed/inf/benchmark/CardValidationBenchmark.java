@@ -0,0 +1,89 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.ed.inf.TestUtils;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.CreditCardInformation;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.validator.CardValidator;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regex based credit card checks that {@code OrderValidator} used to run with the character-scan checks
+ * of {@link CardValidator}, on the card details of every order in the bundled orders.json.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardValidationBenchmark {
+    private CreditCardInformation[] cards;
+
+    @Setup
+    public void setup() throws IOException {
+        this.cards = TestUtils.loadOrders().stream()
+                .map(Order::getCreditCardInformation)
+                .toArray(CreditCardInformation[]::new);
+        // both implementations have to agree before their speed means anything
+        for (CreditCardInformation card: this.cards) {
+            if (regexCheck(card) != scanCheck(card)) {
+                throw new IllegalStateException("implementations disagree on " + card);
+            }
+        }
+    }
+
+    // the checks as OrderValidator ran them before CardValidator, including the expiry parsing
+    static OrderValidationCode regexCheck(CreditCardInformation card) {
+        if (!card.getCreditCardNumber().matches("[0-9]{16}")) {
+            return OrderValidationCode.CARD_NUMBER_INVALID;
+        }
+        if (!card.getCreditCardExpiry().matches("(?:0[1-9]|1[0-2])[/][0-9]{2}")) {
+            return OrderValidationCode.EXPIRY_DATE_INVALID;
+        }
+        int month = Integer.parseInt(card.getCreditCardExpiry().substring(0, 2));
+        int year = Integer.parseInt(card.getCreditCardExpiry().substring(3, 5));
+        if (month + year < 0) {
+            return OrderValidationCode.EXPIRY_DATE_INVALID;
+        }
+        if (!card.getCvv().matches("[0-9]{3}")) {
+            return OrderValidationCode.CVV_INVALID;
+        }
+        return OrderValidationCode.NO_ERROR;
+    }
+
+    static OrderValidationCode scanCheck(CreditCardInformation card) {
+        if (!CardValidator.isValidCardNumber(card.getCreditCardNumber())) {
+            return OrderValidationCode.CARD_NUMBER_INVALID;
+        }
+        int expiry = CardValidator.parseExpiry(card.getCreditCardExpiry());
+        if (expiry == CardValidator.INVALID_EXPIRY) {
+            return OrderValidationCode.EXPIRY_DATE_INVALID;
+        }
+        if (CardValidator.expiryMonth(expiry) + CardValidator.expiryYear(expiry) < 0) {
+            return OrderValidationCode.EXPIRY_DATE_INVALID;
+        }
+        if (!CardValidator.isValidCvv(card.getCvv())) {
+            return OrderValidationCode.CVV_INVALID;
+        }
+        return OrderValidationCode.NO_ERROR;
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (CreditCardInformation card: this.cards) {
+            blackhole.consume(regexCheck(card));
+        }
+    }
+
+    @Benchmark
+    public void characterScan(Blackhole blackhole) {
+        for (CreditCardInformation card: this.cards) {
+            blackhole.consume(scanCheck(card));
+        }
+    }
+}
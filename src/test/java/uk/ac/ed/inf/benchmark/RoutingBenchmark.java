@@ -0,0 +1,150 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.ed.inf.TestUtils;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.LatticePlanner;
+import uk.ac.ed.inf.pathfinder.LngLatHandler;
+import uk.ac.ed.inf.pathfinder.PreparedRegion;
+import uk.ac.ed.inf.pathfinder.RouteTable;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the routing stages on the bundled no-fly zones (namedregions.json) and central area (centralarea.json):
+ * building the static visibility graph, finding the waypoints from Appleton Tower to every restaurant in
+ * restaurants.json, building the {@link RouteTable} that precomputes them and looking distances up in it, expanding
+ * those waypoints into drone moves (one leg at a time, and in one {@link LatticePlanner} flight), taking all 16
+ * compass moves from a position, and the point-in-polygon test used by every move, both on the plain regions and on
+ * {@link PreparedRegion}s.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+    private static final int POINTS = 1000;
+
+    private ZoneSet zoneSet;
+    private VisibilityGraph visibilityGraph;
+    private LngLat[] restaurants;
+    // the waypoints pathfind() returns for each restaurant, input to buildGreedyPath()
+    private LngLat[][] waypoints;
+    private RouteTable routeTable;
+    private LngLat[] points;
+    private NamedRegion[] regions;
+    private PreparedRegion[] preparedRegions;
+
+    @Setup
+    public void setup() throws IOException {
+        NamedRegion centralArea = TestUtils.loadCentralArea();
+        NamedRegion[] noFlyZones = TestUtils.loadNoFlyZones();
+        this.zoneSet = new ZoneSet(centralArea, noFlyZones);
+        this.visibilityGraph = new VisibilityGraph(this.zoneSet);
+
+        Restaurant[] defined = TestUtils.loadRestaurants();
+        this.restaurants = new LngLat[defined.length];
+        this.waypoints = new LngLat[defined.length][];
+        for (int i = 0; i < defined.length; i++) {
+            this.restaurants[i] = defined[i].location();
+            this.waypoints[i] = new DronePathFinder(this.visibilityGraph, APPLETON_TOWER, this.restaurants[i]).pathfind();
+        }
+        this.routeTable = RouteTable.build(this.visibilityGraph, APPLETON_TOWER, this.restaurants);
+
+        // same points every run, spread over a box somewhat larger than the central area
+        this.regions = new NamedRegion[noFlyZones.length + 1];
+        System.arraycopy(noFlyZones, 0, this.regions, 0, noFlyZones.length);
+        this.regions[noFlyZones.length] = centralArea;
+        this.preparedRegions = PreparedRegion.of(this.regions);
+        Random random = new Random(42);
+        this.points = new LngLat[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            this.points[i] = new LngLat(-3.196 + random.nextDouble() * 0.015, 55.940 + random.nextDouble() * 0.009);
+        }
+    }
+
+    @Benchmark
+    public VisibilityGraph visibilityGraphConstruction() {
+        // the constructor, not VisibilityGraph.of, which would return the cached graph
+        return new VisibilityGraph(this.zoneSet);
+    }
+
+    @Benchmark
+    public void pathfind(Blackhole blackhole) {
+        for (LngLat restaurant: this.restaurants) {
+            blackhole.consume(new DronePathFinder(this.visibilityGraph, APPLETON_TOWER, restaurant).pathfind());
+        }
+    }
+
+    @Benchmark
+    public RouteTable routeTableConstruction() {
+        return RouteTable.build(this.visibilityGraph, APPLETON_TOWER, this.restaurants);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void routeTableDistance(Blackhole blackhole) {
+        for (int i = 1; i < this.routeTable.size(); i++) {
+            blackhole.consume(this.routeTable.distance(0, i));
+        }
+    }
+
+    @Benchmark
+    public void buildGreedyPath(Blackhole blackhole) {
+        for (int i = 0; i < this.waypoints.length; i++) {
+            LngLat[] legs = this.waypoints[i];
+            DronePathFinder dronePathFinder = new DronePathFinder(this.visibilityGraph, APPLETON_TOWER, this.restaurants[i]);
+            for (int j = 0; j < legs.length - 1; j++) {
+                blackhole.consume(dronePathFinder.buildGreedyPath(legs[j], legs[j + 1]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void latticePlan(Blackhole blackhole) {
+        for (LngLat restaurant: this.restaurants) {
+            blackhole.consume(LatticePlanner.plan(this.visibilityGraph, APPLETON_TOWER, restaurant,
+                    LatticePlanner.DEFAULT_MAX_EXPANSIONS));
+        }
+    }
+
+    @Benchmark
+    public void nextPosition(Blackhole blackhole) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        for (LngLat point: this.points) {
+            for (double angle = 0; angle < 360; angle += 22.5) {
+                blackhole.consume(lngLatHandler.nextPosition(point, angle));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isInRegion(Blackhole blackhole) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        for (LngLat point: this.points) {
+            for (NamedRegion region: this.regions) {
+                blackhole.consume(lngLatHandler.isInRegion(point, region));
+            }
+        }
+    }
+
+    @Benchmark
+    public void preparedRegionContains(Blackhole blackhole) {
+        for (LngLat point: this.points) {
+            for (PreparedRegion region: this.preparedRegions) {
+                blackhole.consume(region.contains(point));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.TestUtils;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.pathfinder.DronePathFinder;
+import uk.ac.ed.inf.pathfinder.VisibilityGraph;
+import uk.ac.ed.inf.pathfinder.ZoneSet;
+import uk.ac.ed.inf.serializers.Serializer;
+import uk.ac.ed.inf.validator.MenuIndex;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link Serializer#serialize(String)} for one day of the bundled orders.json, routed the same way
+ * {@code Context} routes them. The three files are written to the working directory with the date "benchmark" and
+ * removed afterwards.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+    private static final LocalDate DATE = LocalDate.of(2023, 9, 1);
+    private static final String OUTPUT_DATE = "benchmark";
+
+    private Serializer serializer;
+
+    @Setup
+    public void setup() throws IOException {
+        MenuIndex menuIndex = MenuIndex.of(TestUtils.loadRestaurants());
+        VisibilityGraph visibilityGraph = new VisibilityGraph(new ZoneSet(TestUtils.loadCentralArea(), TestUtils.loadNoFlyZones()));
+        OrderValidator orderValidator = new OrderValidator();
+        HashMap<LngLat, LngLat[]> routes = new HashMap<>();
+
+        this.serializer = new Serializer();
+        for (Order order: TestUtils.loadOrders()) {
+            if (!order.getOrderDate().equals(DATE)) {
+                continue;
+            }
+            orderValidator.validateOrder(order, menuIndex);
+            if (!order.getOrderValidationCode().equals(OrderValidationCode.NO_ERROR)) {
+                this.serializer.addToDeliverySerializer(order, new LngLat(0.0, 0.0), new LngLat(0.0, 0.0));
+                continue;
+            }
+            LngLat dest = menuIndex.getRestaurant(order.getPizzasInOrder()[0].name()).location();
+            LngLat[] dronePath = routes.computeIfAbsent(dest,
+                    d -> new DronePathFinder(visibilityGraph, APPLETON_TOWER, d).getRoute().toArray(new LngLat[0]));
+            this.serializer.addToFlightPathSerializer(order, dronePath);
+            this.serializer.addToDeliverySerializer(order, APPLETON_TOWER, dest);
+            this.serializer.addToFeatureCollection(dronePath);
+        }
+    }
+
+    @Benchmark
+    public void serialize() {
+        this.serializer.serialize(OUTPUT_DATE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (String name: new String[]{"flightpath", "deliveries", "drone"}) {
+            new File(name + "-" + OUTPUT_DATE + ".json").delete();
+        }
+    }
+}
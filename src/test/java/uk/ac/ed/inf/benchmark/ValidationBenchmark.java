@@ -0,0 +1,63 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.ed.inf.TestUtils;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import uk.ac.ed.inf.validator.MenuIndex;
+import uk.ac.ed.inf.validator.OrderValidator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link OrderValidator#validateOrder} over every order in the bundled orders.json, once with the restaurant
+ * array the validator indexes itself and once with a prebuilt {@link MenuIndex}, and once as a batch with
+ * {@link OrderValidator#validateAll} on the common fork-join pool. Validating an order again gives
+ * the same result, so the orders are reused between invocations.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    private OrderValidator orderValidator;
+    private Restaurant[] restaurants;
+    private MenuIndex menuIndex;
+    private Order[] orders;
+    private List<Order> orderList;
+
+    @Setup
+    public void setup() throws IOException {
+        this.orderValidator = new OrderValidator();
+        this.restaurants = TestUtils.loadRestaurants();
+        this.menuIndex = MenuIndex.of(this.restaurants);
+        ArrayList<Order> loaded = TestUtils.loadOrders();
+        this.orders = loaded.toArray(new Order[0]);
+        this.orderList = loaded;
+    }
+
+    @Benchmark
+    public void validateOrder(Blackhole blackhole) {
+        for (Order order: this.orders) {
+            blackhole.consume(this.orderValidator.validateOrder(order, this.restaurants));
+        }
+    }
+
+    @Benchmark
+    public void validateOrderWithMenuIndex(Blackhole blackhole) {
+        for (Order order: this.orders) {
+            blackhole.consume(this.orderValidator.validateOrder(order, this.menuIndex));
+        }
+    }
+
+    @Benchmark
+    public List<Order> validateAll() {
+        return this.orderValidator.validateAll(this.orderList, this.restaurants);
+    }
+}